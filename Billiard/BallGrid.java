@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/**
+ * Broad phase for the table: balls are bucketed into a uniform grid of
+ * square cells at least one ball diameter across, so any two balls that
+ * touch are in the same cell or in neighbouring ones. Each cell is paired
+ * with itself and with four of its eight neighbours (right, and the three
+ * below), which finds every nearby pair exactly once. Buckets are built with a
+ * counting sort into flat arrays, so nothing is allocated once the arrays have
+ * grown to the ball count.
+ */
+public class BallGrid {
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final int[] cellStart;
+    private int[] cellOf = new int[0];
+    private int[] sorted = new int[0];
+    private int[] pairA = new int[0];
+    private int[] pairB = new int[0];
+    private int pairCount;
+
+    public BallGrid(double width, double height, double cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cellStart = new int[cols * rows + 1];
+    }
+
+    /**
+     * Finds the pairs among balls 0..count-1 whose centres are closer than
+     * one cell; read them back with {@link #pairA} and {@link #pairB}. Balls
+     * outside the table are counted in the nearest edge cell.
+     */
+    public int findPairs(double[] x, double[] y, int count) {
+        if (cellOf.length < count) {
+            cellOf = new int[count];
+            sorted = new int[count];
+        }
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < count; i++) {
+            int col = Math.max(0, Math.min(cols - 1, (int) (x[i] / cellSize)));
+            int row = Math.max(0, Math.min(rows - 1, (int) (y[i] / cellSize)));
+            cellOf[i] = row * cols + col;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        // Place from the back so each cell lists its balls in index order
+        for (int i = count - 1; i >= 0; i--) {
+            sorted[--cellStart[cellOf[i] + 1]] = i;
+        }
+        // cellStart[c + 1] now holds the start of cell c; shift it back
+        System.arraycopy(cellStart, 1, cellStart, 0, cols * rows);
+        cellStart[cols * rows] = count;
+
+        pairCount = 0;
+        double reachSquared = cellSize * cellSize;
+        // Walk the balls cell by cell, so empty cells cost nothing here
+        for (int s = 0; s < count; s++) {
+            int a = sorted[s];
+            int cell = cellOf[a];
+            int col = cell % cols;
+            int row = cell / cols;
+            for (int t = s + 1; t < cellStart[cell + 1]; t++) {
+                test(a, sorted[t], x, y, reachSquared);
+            }
+            if (col + 1 < cols) {
+                testCell(a, cell + 1, x, y, reachSquared);
+            }
+            if (row + 1 < rows) {
+                if (col > 0) {
+                    testCell(a, cell + cols - 1, x, y, reachSquared);
+                }
+                testCell(a, cell + cols, x, y, reachSquared);
+                if (col + 1 < cols) {
+                    testCell(a, cell + cols + 1, x, y, reachSquared);
+                }
+            }
+        }
+        return pairCount;
+    }
+
+    private void testCell(int a, int cell, double[] x, double[] y, double reachSquared) {
+        for (int t = cellStart[cell]; t < cellStart[cell + 1]; t++) {
+            test(a, sorted[t], x, y, reachSquared);
+        }
+    }
+
+    private void test(int a, int b, double[] x, double[] y, double reachSquared) {
+        double dx = x[b] - x[a];
+        double dy = y[b] - y[a];
+        if (dx * dx + dy * dy >= reachSquared) {
+            return;
+        }
+        if (pairCount == pairA.length) {
+            int capacity = Math.max(64, pairCount * 2);
+            pairA = Arrays.copyOf(pairA, capacity);
+            pairB = Arrays.copyOf(pairB, capacity);
+        }
+        pairA[pairCount] = a;
+        pairB[pairCount] = b;
+        pairCount++;
+    }
+
+    /** First ball of the k-th pair found by the last {@link #findPairs}. */
+    public int pairA(int k) {
+        return pairA[k];
+    }
+
+    public int pairB(int k) {
+        return pairB[k];
+    }
+
+    public int getPairCount() {
+        return pairCount;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * One step of free motion for every ball: move by its velocity, lose a
+ * fraction of its speed to friction, and turn back off a cushion it has gone
+ * past. Balls are held as parallel arrays, so this is one pass down them.
+ *
+ * <p>This is the plain loop. {@link #create} hands out the
+ * {@link VectorBallIntegrator} instead when the JVM was started with the
+ * incubating vector API ({@code --add-modules jdk.incubator.vector}) and the
+ * class was compiled in; both give bit-for-bit the same results.
+ */
+public class BallIntegrator {
+
+    /** The vector version when the vector API is there, otherwise this one. */
+    public static BallIntegrator create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // By name, so this class loads without the module
+                return (BallIntegrator) Class.forName("VectorBallIntegrator").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not compiled in; the plain loop does the same work
+            }
+        }
+        return new BallIntegrator();
+    }
+
+    /** Steps balls 0..count-1 of radius r on a width x height table. */
+    public void step(double[] x, double[] y, double[] dx, double[] dy, int count,
+            double friction, double r, double width, double height) {
+        step(x, y, dx, dy, 0, count, friction, r, width, height);
+    }
+
+    // Balls from..to-1; the vector version uses it for the ones left over
+    static void step(double[] x, double[] y, double[] dx, double[] dy, int from, int to,
+            double friction, double r, double width, double height) {
+        for (int i = from; i < to; i++) {
+            x[i] += dx[i];
+            y[i] += dy[i];
+            dx[i] *= friction;
+            dy[i] *= friction;
+            if (x[i] - r < 0 || x[i] + r > width) {
+                dx[i] = -dx[i];
+            }
+            if (y[i] - r < 0 || y[i] + r > height) {
+                dy[i] = -dy[i];
+            }
+        }
+    }
+
+    /** Which version this is, for reports. */
+    public String getName() {
+        return "scalar";
+    }
+}
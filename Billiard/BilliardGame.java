@@ -3,7 +3,14 @@ import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseAdapter;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class BilliardGame extends JPanel {
     private static final int WIDTH = 800;
@@ -12,22 +19,104 @@ public class BilliardGame extends JPanel {
     private static final int CUE_LENGTH = 150; // Static length
     private static final int CUE_WIDTH = 8; // Thicker cue
     private static final int HOLE_RADIUS = 20;
+    // Sandbox mode: a crowd of small balls with no pockets and no friction
+    private static final int SANDBOX_BALLS = 10_000;
+    private static final int SANDBOX_RADIUS = 2;
+    // One step of the fixed-step simulation; the event-driven one keeps time in these
+    private static final long STEP_NANOS = 20_000_000L;
+    // Steps one physics tick may run to catch up after a stall; the rest are dropped
+    private static final int MAX_CATCH_UP = 5;
+    // The computer's fan of shots: directions, and strengths in pixels per step
+    private static final int PLAN_ANGLES = 720;
+    private static final int PLAN_POWERS = 4;
+    private static final double PLAN_MIN_POWER = 4;
+    private static final double PLAN_MAX_POWER = 24;
 
-    private Ball whiteBall;
-    private ArrayList<Ball> balls = new ArrayList<>();
+    // The balls, one slot each across parallel arrays; slots 0..count-1 are
+    // on the table. A pocketed ball's slot is filled from the last one. They
+    // belong to the physics thread once it has started; the EDT only ever
+    // sees them through snapshots.
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] dx = new double[0];
+    private double[] dy = new double[0];
+    // Ball number in each slot, which indexes ballColors
+    private int[] number = new int[0];
+    private int count;
+    // Slot of the white ball, or -1 once it has been pocketed
+    private int white = -1;
     private boolean aiming = false;
     private int cueX, cueY;
     private ArrayList<Hole> holes = new ArrayList<>();
     private int score = 0;
+    // Colour of each ball by number, fixed before the physics thread starts
+    private Color[] ballColors = new Color[0];
+    private final boolean sandbox;
+    private final int radius;
+    private final double friction;
+    private final BallIntegrator integrator = BallIntegrator.create();
+    // Broad phase
+    private final BallGrid grid;
+    private long lastStepNanos;
+    private double averageStepNanos;
+    // Event-driven mode: the simulation owns the balls' motion and the slots
+    // are brought up to date from it for painting. eventIndex is the
+    // simulation's index for the ball in each slot, moved along with it.
+    private EventSimulation events;
+    private int[] eventIndex = new int[0];
+    // Steps the event-driven table has let go by after falling behind
+    private double eventStepsDropped;
+    // Shots come in from the EDT and are handed to the physics thread here
+    private final AtomicReference<double[]> pendingShot = new AtomicReference<>();
+
+    // Physics runs on its own thread at a fixed step, paced by nanoTime
+    private ScheduledExecutorService physics;
+    private long startNanos;
+    private long stepsDone;
+    // Snapshot handoff. The physics thread fills back and swaps it into
+    // latest; the painter swaps latest out, keeps it as front, and returns
+    // the front it had through recycled for the physics thread to reuse.
+    private final AtomicReference<TableSnapshot> latest = new AtomicReference<>();
+    private final AtomicReference<TableSnapshot> recycled = new AtomicReference<>();
+    private TableSnapshot back = new TableSnapshot();
+    private TableSnapshot front;
+
+    // Playing the computer: turns alternate, except that a shot which pots a
+    // ball other than the white keeps the table. Turns are kept on the
+    // physics thread; the EDT only reads computerTurn, to ignore the mouse.
+    private ShotPlanner opponent;
+    private volatile boolean computerTurn;
+    private int computerScore;
+    private boolean shotInPlay;
+    private int shotPots;
+    private boolean shotLostWhite;
+    private CompletableFuture<ShotPlanner.Shot> plannedShot;
 
     public BilliardGame() {
+        this(0);
+    }
+
+    /** A normal game, or with sandboxBalls > 0 a sandbox of that many small balls. */
+    public BilliardGame(int sandboxBalls) {
         setPreferredSize(new Dimension(WIDTH, HEIGHT));
         setBackground(new Color(0, 100, 0)); // Dark green
-        initBalls();
-        initHoles();
+        sandbox = sandboxBalls > 0;
+        radius = sandbox ? SANDBOX_RADIUS : BALL_RADIUS;
+        friction = sandbox ? 1.0 : 0.99;
+        if (sandbox) {
+            initSandbox(sandboxBalls);
+        } else {
+            initBalls();
+            initHoles();
+        }
+        // Cells one diameter across: touching balls are never more than a cell apart
+        grid = new BallGrid(WIDTH, HEIGHT, 2 * radius);
         addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
+                if (computerTurn) {
+                    return;
+                }
                 aiming = true;
                 cueX = e.getX();
                 cueY = e.getY();
@@ -39,19 +128,68 @@ public class BilliardGame extends JPanel {
                     int dx = cueX - e.getX();
                     int dy = cueY - e.getY();
                     double power = Math.sqrt(dx * dx + dy * dy) / 10;
-                    whiteBall.dx = dx / 10.0;
-                    whiteBall.dy = dy / 10.0;
+                    pendingShot.set(new double[] {dx / 10.0, dy / 10.0});
                     aiming = false;
                 }
             }
         });
     }
 
+    // Puts a ball at rest on the table, numbered in the order added, and
+    // returns its slot
+    private int addBall(double ballX, double ballY, Color color) {
+        if (count == x.length) {
+            int capacity = Math.max(16, count * 2);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            dx = Arrays.copyOf(dx, capacity);
+            dy = Arrays.copyOf(dy, capacity);
+            number = Arrays.copyOf(number, capacity);
+            eventIndex = Arrays.copyOf(eventIndex, capacity);
+            ballColors = Arrays.copyOf(ballColors, capacity);
+        }
+        x[count] = ballX;
+        y[count] = ballY;
+        number[count] = count;
+        ballColors[count] = color;
+        return count++;
+    }
+
+    // Pockets the ball in slot i, scoring it for whoever is shooting
+    private void pocket(int i) {
+        if (i == white) {
+            shotLostWhite = true;
+        } else {
+            shotPots++;
+        }
+        removeBall(i);
+        if (computerTurn) {
+            computerScore++;
+        } else {
+            score++;
+        }
+    }
+
+    // Takes the ball in slot i off the table by moving the last ball into its slot
+    private void removeBall(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        dx[i] = dx[last];
+        dy[i] = dy[last];
+        number[i] = number[last];
+        eventIndex[i] = eventIndex[last];
+        if (white == i) {
+            white = -1;
+        } else if (white == last) {
+            white = i;
+        }
+    }
+
     private void initBalls() {
-        whiteBall = new Ball(WIDTH / 2, HEIGHT / 2, BALL_RADIUS, Color.WHITE, 0);
-        balls.add(whiteBall);
-        balls.add(new Ball(WIDTH / 3, HEIGHT / 2, BALL_RADIUS, Color.RED, 1));
-        balls.add(new Ball(WIDTH / 4, HEIGHT / 2, BALL_RADIUS, Color.BLUE, 2));
+        white = addBall(WIDTH / 2, HEIGHT / 2, Color.WHITE);
+        addBall(WIDTH / 3, HEIGHT / 2, Color.RED);
+        addBall(WIDTH / 4, HEIGHT / 2, Color.BLUE);
         // Add all 15 balls with colors and numbers
         Color[] colors = {
                 new Color(255, 0, 0), new Color(255, 127, 0), new Color(255, 255, 0), 
@@ -62,10 +200,36 @@ public class BilliardGame extends JPanel {
         };
 
         for (int i = 3; i <= 15; i++) {
-            balls.add(new Ball(WIDTH / (4 + i % 4), HEIGHT / (2 + i % 3), BALL_RADIUS, colors[i - 1], i));
+            addBall(WIDTH / (4 + i % 4), HEIGHT / (2 + i % 3), colors[i - 1]);
         }
     }
 
+    // Balls on a jittered lattice, spaced out so none start touching, moving
+    // at random. Seeded, so every run starts the same.
+    private void initSandbox(int count) {
+        double spacing = Math.sqrt((double) (WIDTH - 2 * SANDBOX_RADIUS) * (HEIGHT - 2 * SANDBOX_RADIUS) / count);
+        int columns = (int) ((WIDTH - 2 * SANDBOX_RADIUS) / spacing);
+        if (spacing < 2 * SANDBOX_RADIUS + 0.5 || (long) columns * (int) ((HEIGHT - 2 * SANDBOX_RADIUS) / spacing) < count) {
+            spacing = 2 * SANDBOX_RADIUS + 0.5;
+            columns = (int) ((WIDTH - 2 * SANDBOX_RADIUS) / spacing);
+            if ((long) columns * (int) ((HEIGHT - 2 * SANDBOX_RADIUS) / spacing) < count) {
+                throw new IllegalArgumentException(count + " balls do not fit on the table");
+            }
+        }
+        Random random = new Random(1);
+        double jitter = spacing - 2 * SANDBOX_RADIUS - 0.5;
+        for (int i = 0; i < count; i++) {
+            double ballX = SANDBOX_RADIUS + (i % columns) * spacing + random.nextDouble() * jitter;
+            double ballY = SANDBOX_RADIUS + (i / columns) * spacing + random.nextDouble() * jitter;
+            Color color = i == 0 ? Color.WHITE : Color.getHSBColor(random.nextFloat(), 0.8f, 1f);
+            int slot = addBall(ballX + SANDBOX_RADIUS, ballY + SANDBOX_RADIUS, color);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            dx[slot] = Math.cos(angle);
+            dy[slot] = Math.sin(angle);
+        }
+        white = 0;
+    }
+
     private void initHoles() {
         holes.add(new Hole(HOLE_RADIUS, HOLE_RADIUS));
         holes.add(new Hole(WIDTH - HOLE_RADIUS, HOLE_RADIUS));
@@ -83,132 +247,471 @@ public class BilliardGame extends JPanel {
         g.setColor(new Color(0, 100, 0)); // Dark green table color
         g.fillRect(20, 20, WIDTH - 40, HEIGHT - 40);
 
-        for (Ball ball : balls) {
-            g.setColor(ball.color);
-            g.fillOval((int) ball.x - BALL_RADIUS, (int) ball.y - BALL_RADIUS, BALL_RADIUS * 2, BALL_RADIUS * 2);
-            g.setColor(Color.WHITE);
-            g.drawString(String.valueOf(ball.number), (int) ball.x - 5, (int) ball.y + 5);
+        TableSnapshot table = takeSnapshot();
+        if (table == null) {
+            return;
+        }
+        for (int i = 0; i < table.count; i++) {
+            int x = (int) table.x[i];
+            int y = (int) table.y[i];
+            g.setColor(ballColors[table.id[i]]);
+            g.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+            if (!sandbox) {
+                g.setColor(Color.WHITE);
+                g.drawString(String.valueOf(table.id[i]), x - 5, y + 5);
+            }
         }
         for (Hole hole : holes) {
             g.setColor(Color.BLACK);
             g.fillOval((int) hole.x - HOLE_RADIUS, (int) hole.y - HOLE_RADIUS, HOLE_RADIUS * 2, HOLE_RADIUS * 2);
         }
-        if (aiming) {
+        if (aiming && !Double.isNaN(table.whiteX)) {
             g.setColor(Color.BLACK);
-            double angle = Math.atan2(whiteBall.y - cueY, whiteBall.x - cueX);
-            int endX = (int) (whiteBall.x + CUE_LENGTH * Math.cos(angle));
-            int endY = (int) (whiteBall.y + CUE_LENGTH * Math.sin(angle));
-            g.fillRect((int) whiteBall.x, (int) whiteBall.y, endX - (int) whiteBall.x, endY - (int) whiteBall.y);
+            double angle = Math.atan2(table.whiteY - cueY, table.whiteX - cueX);
+            int endX = (int) (table.whiteX + CUE_LENGTH * Math.cos(angle));
+            int endY = (int) (table.whiteY + CUE_LENGTH * Math.sin(angle));
+            g.fillRect((int) table.whiteX, (int) table.whiteY, endX - (int) table.whiteX, endY - (int) table.whiteY);
         }
         g.setColor(Color.BLACK);
-        g.drawString("Score: " + score, WIDTH / 2 - 30, 20); // Score in the upper middle
+        if (sandbox) {
+            g.setColor(Color.WHITE);
+            g.drawString(String.format("%d balls (%s), step %.2f ms (%.0f steps/s), %d pairs checked",
+                    table.count, integrator.getName(), table.averageStepNanos / 1e6, 1e9 / Math.max(1, table.averageStepNanos), table.pairs), 30, 15);
+        } else if (opponent != null) {
+            g.drawString("You: " + table.score + "   Computer: " + table.computerScore + "   " + table.turn,
+                    WIDTH / 2 - 120, 20);
+        } else {
+            g.drawString("Score: " + table.score, WIDTH / 2 - 30, 20); // Score in the upper middle
+        }
+        if (events != null) {
+            g.setColor(Color.WHITE);
+            g.drawString(String.format("Event-driven: %d contacts, %d stale predictions dropped",
+                    table.contacts, table.staleContacts), 30, HEIGHT - 6);
+        }
     }
 
-    public void move() {
-        Iterator<Ball> iterator = balls.iterator();
-        while (iterator.hasNext()) {
-            Ball ball = iterator.next();
-            ball.move();
-            checkCollisions(ball);
-            checkHoles(ball, iterator);
+    // EDT: the newest published snapshot, or the one painted last time if
+    // nothing new has come in
+    private TableSnapshot takeSnapshot() {
+        TableSnapshot next = latest.getAndSet(null);
+        if (next != null) {
+            if (front != null) {
+                recycled.set(front);
+            }
+            front = next;
+        }
+        return front;
+    }
+
+    /** Starts the physics thread. From here on only it touches the balls. */
+    public void start() {
+        publish();
+        startNanos = System.nanoTime();
+        physics = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "billiard-physics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        physics.scheduleAtFixedRate(this::physicsTick, STEP_NANOS, STEP_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    // Physics thread. The number of steps due is worked out from nanoTime,
+    // so late or bunched-up runs neither lose nor gain time; the event-driven
+    // table just jumps to wherever the clock says it should be.
+    private void physicsTick() {
+        try {
+            long elapsed = System.nanoTime() - startNanos;
+            double[] shot = pendingShot.getAndSet(null);
+            if (shot != null && (opponent == null || (!computerTurn && !shotInPlay))) {
+                shoot(shot[0], shot[1]);
+            }
+            if (events != null) {
+                // Like the stepped table, catch up at most MAX_CATCH_UP steps
+                // and let the rest go rather than fall further behind
+                double due = (double) elapsed / STEP_NANOS - eventStepsDropped;
+                if (due - events.getTime() > MAX_CATCH_UP) {
+                    eventStepsDropped += due - events.getTime() - MAX_CATCH_UP;
+                    due = events.getTime() + MAX_CATCH_UP;
+                }
+                advanceEvents(due);
+                stepsDone = elapsed / STEP_NANOS;
+            } else {
+                long due = elapsed / STEP_NANOS - stepsDone;
+                if (due > MAX_CATCH_UP) {
+                    stepsDone += due - MAX_CATCH_UP;
+                    due = MAX_CATCH_UP;
+                }
+                for (; due > 0; due--) {
+                    move();
+                    stepsDone++;
+                }
+            }
+            if (opponent != null) {
+                takeTurns();
+            }
+            publish();
+            repaint();
+        } catch (RuntimeException e) {
+            // Keep the table running; a scheduled task that throws is never run again
+            e.printStackTrace();
+        }
+    }
+
+    private void shoot(double vx, double vy) {
+        if (white < 0) {
+            return;
+        }
+        shotInPlay = true;
+        shotPots = 0;
+        shotLostWhite = false;
+        if (events != null) {
+            events.setVelocity(eventIndex[white], vx, vy);
+        } else {
+            dx[white] = vx;
+            dy[white] = vy;
+        }
+    }
+
+    // Physics thread. Once a shot has stopped rolling the turn passes, unless
+    // it potted something and kept the white; on the computer's turn a plan
+    // is started on the fork/join pool and played when it is ready.
+    private void takeTurns() {
+        if (shotInPlay && atRest()) {
+            shotInPlay = false;
+            if (shotPots == 0 || shotLostWhite) {
+                computerTurn = !computerTurn;
+            }
+        }
+        if (!computerTurn || shotInPlay || white < 0 || count < 2) {
+            return;
+        }
+        if (plannedShot == null) {
+            opponent.setTable(x, y, count, white);
+            plannedShot = CompletableFuture.supplyAsync(opponent::plan);
+        } else if (plannedShot.isDone()) {
+            CompletableFuture<ShotPlanner.Shot> done = plannedShot;
+            // Cleared first, so a plan that failed is started afresh next tick
+            plannedShot = null;
+            ShotPlanner.Shot plan = done.join();
+            shoot(plan.vx, plan.vy);
         }
     }
 
-    private void checkCollisions(Ball ball) {
-        if (ball.x - BALL_RADIUS < 0 || ball.x + BALL_RADIUS > WIDTH) {
-            ball.dx = -ball.dx;
+    private boolean atRest() {
+        double rest = ShotPlanner.REST_SPEED * ShotPlanner.REST_SPEED;
+        for (int i = 0; i < count; i++) {
+            if (dx[i] * dx[i] + dy[i] * dy[i] >= rest) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String turnText() {
+        if (white < 0 || count < 2) {
+            return "Game over";
+        }
+        if (shotInPlay) {
+            return "Rolling...";
+        }
+        return computerTurn ? "Computer is thinking..." : "Your shot";
+    }
+
+    // Physics thread: copies the table into the back snapshot and swaps it
+    // in for the painter. If the painter never took the one it replaces,
+    // that one is reused; otherwise the one the painter gave back is.
+    private void publish() {
+        TableSnapshot table = back;
+        table.ensureCapacity(count);
+        table.count = count;
+        System.arraycopy(x, 0, table.x, 0, count);
+        System.arraycopy(y, 0, table.y, 0, count);
+        System.arraycopy(number, 0, table.id, 0, count);
+        table.whiteX = white >= 0 ? x[white] : Double.NaN;
+        table.whiteY = white >= 0 ? y[white] : Double.NaN;
+        table.score = score;
+        table.computerScore = computerScore;
+        table.turn = opponent != null ? turnText() : null;
+        table.step = stepsDone;
+        table.averageStepNanos = averageStepNanos;
+        table.pairs = grid.getPairCount();
+        if (events != null) {
+            table.contacts = events.getEventsHandled();
+            table.staleContacts = events.getStaleEvents();
+        }
+        TableSnapshot unread = latest.getAndSet(table);
+        if (unread == null) {
+            unread = recycled.getAndSet(null);
+        }
+        back = unread != null ? unread : new TableSnapshot();
+    }
+
+    // One step: move every ball and bounce it off the cushions in one pass
+    // down the arrays, then settle the collisions, then pocket. Collisions go
+    // through the grid, so a step costs about O(n) instead of comparing every
+    // ball with every other.
+    public void move() {
+        long start = System.nanoTime();
+        integrator.step(x, y, dx, dy, count, friction, radius, WIDTH, HEIGHT);
+        checkCollisions();
+        if (!sandbox) {
+            checkHoles();
         }
-        if (ball.y - BALL_RADIUS < 0 || ball.y + BALL_RADIUS > HEIGHT) {
-            ball.dy = -ball.dy;
+        lastStepNanos = System.nanoTime() - start;
+        averageStepNanos = averageStepNanos == 0 ? lastStepNanos : 0.95 * averageStepNanos + 0.05 * lastStepNanos;
+    }
+
+    private void checkCollisions() {
+        int pairs = grid.findPairs(x, y, count);
+        for (int k = 0; k < pairs; k++) {
+            resolve(grid.pairA(k), grid.pairB(k));
         }
+    }
 
-        for (Ball other : balls) {
-            if (ball != other && ball.intersects(other)) {
-                double dx = other.x - ball.x;
-                double dy = other.y - ball.y;
-                double distance = Math.sqrt(dx * dx + dy * dy);
-                double overlap = 0.5 * (distance - 2 * BALL_RADIUS);
+    // Narrow phase for one pair, once: push the balls apart so they just
+    // touch, then if they are closing, swap their speeds along the line
+    // between centres (equal masses, elastic)
+    private void resolve(int a, int b) {
+        resolve(x, y, dx, dy, a, b, radius);
+    }
 
-                ball.x -= overlap * (ball.x - other.x) / distance;
-                ball.y -= overlap * (ball.y - other.y) / distance;
-                other.x += overlap * (ball.x - other.x) / distance;
-                other.y += overlap * (ball.y - other.y) / distance;
+    // The same for balls of the given radius in any set of arrays; the
+    // computer's shot planner plays its shots out with it too
+    static void resolve(double[] x, double[] y, double[] dx, double[] dy, int a, int b, double radius) {
+        double gapX = x[b] - x[a];
+        double gapY = y[b] - y[a];
+        double distance = Math.sqrt(gapX * gapX + gapY * gapY);
+        if (distance >= 2 * radius || distance == 0) {
+            return;
+        }
+        double nx = gapX / distance;
+        double ny = gapY / distance;
+        double overlap = 0.5 * (2 * radius - distance);
+        x[a] -= overlap * nx;
+        y[a] -= overlap * ny;
+        x[b] += overlap * nx;
+        y[b] += overlap * ny;
 
-                double dvx = other.dx - ball.dx;
-                double dvy = other.dy - ball.dy;
-                double dotProduct = dx * dvx + dy * dvy;
+        double closing = (dx[b] - dx[a]) * nx + (dy[b] - dy[a]) * ny;
+        if (closing < 0) {
+            dx[a] += closing * nx;
+            dy[a] += closing * ny;
+            dx[b] -= closing * nx;
+            dy[b] -= closing * ny;
+        }
+    }
 
-                if (dotProduct > 0) {
-                    double collisionScale = dotProduct / (distance * distance);
-                    double fx = dx * collisionScale;
-                    double fy = dy * collisionScale;
+    /** Hands the balls, as they are now, to an event-driven simulation that moves them from here on. */
+    public void startEvents() {
+        double[] holeX = new double[holes.size()];
+        double[] holeY = new double[holes.size()];
+        for (int h = 0; h < holes.size(); h++) {
+            holeX[h] = holes.get(h).x;
+            holeY[h] = holes.get(h).y;
+        }
+        events = new EventSimulation(WIDTH, HEIGHT, holeX, holeY, HOLE_RADIUS + BALL_RADIUS, friction);
+        double[] r = new double[count];
+        Arrays.fill(r, radius);
+        for (int i = 0; i < count; i++) {
+            eventIndex[i] = i;
+        }
+        events.load(count, x, y, dx, dy, r);
+    }
 
-                    ball.dx += fx;
-                    ball.dy += fy;
-                    other.dx -= fx;
-                    other.dy -= fy;
-                }
+    /** Makes the computer the opponent, taking turns with the mouse. */
+    public void playComputer() {
+        double[] holeX = new double[holes.size()];
+        double[] holeY = new double[holes.size()];
+        for (int h = 0; h < holes.size(); h++) {
+            holeX[h] = holes.get(h).x;
+            holeY[h] = holes.get(h).y;
+        }
+        opponent = new ShotPlanner(WIDTH, HEIGHT, radius, friction, holeX, holeY, HOLE_RADIUS + BALL_RADIUS,
+                PLAN_ANGLES, PLAN_POWERS, PLAN_MIN_POWER, PLAN_MAX_POWER);
+    }
+
+    /** Event-driven mode: runs the table up to time t, in steps, and updates the balls to match. */
+    public void advanceEvents(double t) {
+        events.advanceTo(t);
+        // From the back, so a ball moved into a pocketed one's slot is already up to date
+        for (int i = count - 1; i >= 0; i--) {
+            int e = eventIndex[i];
+            if (events.isPocketed(e)) {
+                pocket(i);
+                continue;
             }
+            x[i] = events.x(e);
+            y[i] = events.y(e);
+            dx[i] = events.vx(e);
+            dy[i] = events.vy(e);
         }
     }
 
-    private void checkHoles(Ball ball, Iterator<Ball> iterator) {
-        for (Hole hole : holes) {
-            if (hole.contains(ball)) {
-                iterator.remove();
-                score++;
-                break;
+    private void checkHoles() {
+        // From the back, so a ball moved into a pocketed one's slot has been checked already
+        for (int i = count - 1; i >= 0; i--) {
+            for (Hole hole : holes) {
+                if (hole.contains(x[i], y[i])) {
+                    pocket(i);
+                    break;
+                }
             }
         }
     }
 
     public static void main(String[] args) {
-        JFrame frame = new JFrame("Billiard Game");
-        BilliardGame billiardGame = new BilliardGame();
+        // Plain build: "javac *.java" then "java BilliardGame". With the vector
+        // integrator: "javac --add-modules jdk.incubator.vector -d . *.java vector/*.java"
+        // then "java --add-modules jdk.incubator.vector BilliardGame"; without
+        // the class or the module, the plain loop is used instead
+        if (args.length > 0 && args[0].equals("--sandbox-bench")) {
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : SANDBOX_BALLS,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 2000);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--integrate-bench")) {
+            integrateBenchmark();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--plan-bench")) {
+            planBenchmark(args.length > 1 ? Integer.parseInt(args[1]) : 20);
+            return;
+        }
+        // "java BilliardGame --sandbox [balls]" opens the sandbox instead of a
+        // game, "--events" runs the table event-driven instead of in steps, and
+        // "--computer" has the computer take turns with you. The event-driven
+        // table checks every pair, so it is for the game's 16 balls only
+        int sandboxBalls = 0;
+        boolean eventDriven = false;
+        boolean computer = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--sandbox")) {
+                sandboxBalls = i + 1 < args.length && args[i + 1].matches("\\d+")
+                        ? Integer.parseInt(args[++i]) : SANDBOX_BALLS;
+            } else if (args[i].equals("--events")) {
+                eventDriven = true;
+            } else if (args[i].equals("--computer")) {
+                computer = true;
+            }
+        }
+        if (eventDriven && sandboxBalls > 0) {
+            System.err.println("Usage: BilliardGame [--sandbox [balls] | --events] [--computer]");
+            System.exit(2);
+        }
+        JFrame frame = new JFrame(sandboxBalls > 0 ? "Billiard Sandbox" : "Billiard Game");
+        BilliardGame billiardGame = new BilliardGame(sandboxBalls);
+        if (eventDriven) {
+            billiardGame.startEvents();
+        }
+        if (computer && sandboxBalls == 0) {
+            billiardGame.playComputer();
+        }
         frame.add(billiardGame);
         frame.pack();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
+        billiardGame.start();
+    }
 
-        while (true) {
-            billiardGame.move();
-            billiardGame.repaint();
-            try {
-                Thread.sleep(20);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+    // "java BilliardGame --sandbox-bench [balls] [steps]": runs the sandbox
+    // with no window and reports steps per second
+    private static void benchmark(int count, int steps) {
+        BilliardGame game = new BilliardGame(count);
+        for (int i = 0; i < steps / 4; i++) {
+            game.move();
         }
+        long start = System.nanoTime();
+        long pairs = 0;
+        for (int i = 0; i < steps; i++) {
+            game.move();
+            pairs += game.grid.getPairCount();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d balls (%s): %.0f steps/s, %.3f ms/step, %.0f pairs checked per step%n",
+                count, game.integrator.getName(), steps / seconds, seconds * 1e3 / steps, (double) pairs / steps);
     }
 
-    class Ball {
-        double x, y, dx, dy;
-        int radius;
-        Color color;
-        int number;
-
-        Ball(double x, double y, int radius, Color color, int number) {
-            this.x = x;
-            this.y = y;
-            this.radius = radius;
-            this.color = color;
-            this.number = number;
+    // "java BilliardGame --plan-bench [plans]": the computer planning its
+    // opening shot, timed once warm
+    private static void planBenchmark(int plans) {
+        BilliardGame game = new BilliardGame();
+        // Let the opening table settle first, as it would before anyone shoots
+        while (!game.atRest()) {
+            game.move();
         }
+        game.playComputer();
+        game.opponent.setTable(game.x, game.y, game.count, game.white);
+        for (int i = 0; i < plans; i++) {
+            game.opponent.plan();
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        ShotPlanner.Shot shot = null;
+        for (int i = 0; i < plans; i++) {
+            long start = System.nanoTime();
+            shot = game.opponent.plan();
+            long nanos = System.nanoTime() - start;
+            best = Math.min(best, nanos);
+            total += nanos;
+        }
+        System.out.printf("%d shots per plan on %d threads: %.1f ms a plan (best %.1f ms); "
+                + "chose (%.2f, %.2f), expecting %d pots, value %.1f%n",
+                game.opponent.getCandidates(), ForkJoinPool.getCommonPoolParallelism(),
+                total / 1e6 / plans, best / 1e6, shot.vx, shot.vy, shot.pots, shot.value);
+    }
 
-        void move() {
-            x += dx;
-            y += dy;
-            dx *= 0.99;
-            dy *= 0.99;
+    // "java BilliardGame --integrate-bench": the move-and-friction pass on its
+    // own, plain loop against the vector one, in balls per nanosecond
+    private static void integrateBenchmark() {
+        BallIntegrator scalar = new BallIntegrator();
+        BallIntegrator best = BallIntegrator.create();
+        for (int n : new int[] {16, 1_000, 100_000}) {
+            Random random = new Random(n);
+            double[] x = new double[n];
+            double[] y = new double[n];
+            double[] dx = new double[n];
+            double[] dy = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = BALL_RADIUS + random.nextDouble() * (WIDTH - 2 * BALL_RADIUS);
+                y[i] = BALL_RADIUS + random.nextDouble() * (HEIGHT - 2 * BALL_RADIUS);
+                dx[i] = random.nextDouble() * 20 - 10;
+                dy[i] = random.nextDouble() * 20 - 10;
+            }
+            double[][] results = new double[2][];
+            BallIntegrator[] integrators = {scalar, best};
+            for (int k = 0; k < integrators.length; k++) {
+                double[] px = x.clone();
+                double[] py = y.clone();
+                double[] vx = dx.clone();
+                double[] vy = dy.clone();
+                // About 200 million ball-steps, after a quarter as many to warm up
+                int rounds = Math.max(1, 200_000 / n);
+                timeIntegrator(integrators[k], px, py, vx, vy, dx, dy, rounds / 4);
+                long nanos = timeIntegrator(integrators[k], px, py, vx, vy, dx, dy, rounds);
+                System.out.printf("%7d balls, %-16s %.2f balls/ns%n",
+                        n, integrators[k].getName() + ":", (double) n * rounds * 1000 / nanos);
+                results[k] = px;
+            }
+            if (!Arrays.equals(results[0], results[1])) {
+                System.out.println("  the two integrators disagree");
+            }
         }
+    }
 
-        boolean intersects(Ball other) {
-            double dx = other.x - x;
-            double dy = other.y - y;
-            double distance = Math.sqrt(dx * dx + dy * dy);
-            return distance < (radius + other.radius);
+    // Runs rounds of 1000 steps, putting the starting speeds back after each
+    // so friction never runs them down into slow subnormal numbers
+    private static long timeIntegrator(BallIntegrator integrator, double[] x, double[] y,
+            double[] dx, double[] dy, double[] startDx, double[] startDy, int rounds) {
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            System.arraycopy(startDx, 0, dx, 0, dx.length);
+            System.arraycopy(startDy, 0, dy, 0, dy.length);
+            for (int step = 0; step < 1000; step++) {
+                integrator.step(x, y, dx, dy, x.length, 0.99, BALL_RADIUS, WIDTH, HEIGHT);
+            }
         }
+        return System.nanoTime() - start;
     }
 
     class Hole {
@@ -219,9 +722,9 @@ public class BilliardGame extends JPanel {
             this.y = y;
         }
 
-        boolean contains(Ball ball) {
-            double dx = ball.x - x;
-            double dy = ball.y - y;
+        boolean contains(double ballX, double ballY) {
+            double dx = ballX - x;
+            double dy = ballY - y;
             double distance = Math.sqrt(dx * dx + dy * dy);
             return distance < (HOLE_RADIUS + BALL_RADIUS);
         }
@@ -0,0 +1,350 @@
+import java.util.PriorityQueue;
+
+/**
+ * Event-driven table: instead of moving every ball a fixed step at a time,
+ * it works out exactly when the next ball-ball, ball-cushion or ball-pocket
+ * contact happens, jumps there, and handles it. Nothing can tunnel and the
+ * result does not depend on how often it is asked to advance; the work is
+ * proportional to the number of contacts, not the number of frames.
+ *
+ * <p>Time is measured in steps of the fixed-step game (20 ms), and friction
+ * takes the same fraction of every ball's speed per step, so speed decays as
+ * e^(-kt) for all balls alike. In the warped time tau = -e^(-kt) / k every
+ * ball therefore moves in a straight line at a constant "reduced" velocity u,
+ * real velocity being u * (-k * tau), and contact times are roots of the same
+ * quadratics as without friction. A ball comes to rest as tau approaches 0,
+ * so contacts at tau >= 0 never happen. With no friction tau is just time.
+ * Every so often the clock is restarted so the numbers stay small.
+ *
+ * <p>Every ball is checked against every other when its course changes, so
+ * this suits a table of a few dozen balls, not the sandbox's thousands.
+ *
+ * <p>Predicted contacts go into a priority queue ordered by tau. A contact
+ * remembers how many contacts each of its balls had when it was predicted;
+ * if either has had one since, it is out of date and dropped when it comes
+ * up, rather than being searched for and removed.
+ */
+public class EventSimulation {
+    // Restart the warped clock after this many steps so e^(kt) stays modest
+    private static final double REBASE_STEPS = 500;
+    private static final int CUSHION_X = -2;
+    private static final int CUSHION_Y = -3;
+    private static final int POCKET = -4;
+
+    private final double width;
+    private final double height;
+    private final double[] holeX;
+    private final double[] holeY;
+    private final double holeReach;
+    // Friction rate per step, 0 for none
+    private final double k;
+
+    private int count;
+    // Position at tau = 0 and reduced velocity: position(tau) = a + u * tau
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] ux = new double[0];
+    private double[] uy = new double[0];
+    private double[] radius = new double[0];
+    private int[] contacts = new int[0];
+    private boolean[] pocketed = new boolean[0];
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private double epoch;
+    private double now;
+    private double tauNow;
+    private long eventsHandled;
+    private long staleEvents;
+
+    /**
+     * A table width x height with cushions at its edges, and pockets that
+     * take a ball once its centre is within holeReach of theirs.
+     * frictionPerStep is the speed kept per step, e.g. 0.99, or 1 for none.
+     */
+    public EventSimulation(double width, double height, double[] holeX, double[] holeY,
+            double holeReach, double frictionPerStep) {
+        this.width = width;
+        this.height = height;
+        this.holeX = holeX.clone();
+        this.holeY = holeY.clone();
+        this.holeReach = holeReach;
+        this.k = frictionPerStep >= 1 ? 0 : -Math.log(frictionPerStep);
+    }
+
+    /** Replaces the balls with the given ones, at time 0. */
+    public void load(int n, double[] x, double[] y, double[] vx, double[] vy, double[] r) {
+        count = n;
+        if (ax.length < n) {
+            ax = new double[n];
+            ay = new double[n];
+            ux = new double[n];
+            uy = new double[n];
+            radius = new double[n];
+            contacts = new int[n];
+            pocketed = new boolean[n];
+        }
+        epoch = 0;
+        now = 0;
+        tauNow = tau(0);
+        for (int i = 0; i < n; i++) {
+            radius[i] = r[i];
+            contacts[i] = 0;
+            pocketed[i] = false;
+            setState(i, x[i], y[i], vx[i], vy[i]);
+        }
+        predictAll();
+    }
+
+    /** Runs every contact up to time t (in steps) and leaves the balls there. */
+    public void advanceTo(double t) {
+        if (t <= now) {
+            return;
+        }
+        double target = tau(t);
+        while (!queue.isEmpty() && queue.peek().tau <= target) {
+            Event event = queue.poll();
+            if (!event.isCurrent(contacts)) {
+                staleEvents++;
+                continue;
+            }
+            tauNow = event.tau;
+            handle(event);
+            eventsHandled++;
+        }
+        tauNow = target;
+        now = t;
+        if (now - epoch > REBASE_STEPS) {
+            restartClock();
+            predictAll();
+        }
+    }
+
+    /** Gives ball i a new velocity now, e.g. for a shot. */
+    public void setVelocity(int i, double vx, double vy) {
+        if (pocketed[i]) {
+            return;
+        }
+        // Everyone else's predictions were made with the old clock too; start afresh
+        restartClock();
+        setState(i, x(i), y(i), vx, vy);
+        contacts[i]++;
+        predictAll();
+    }
+
+    private void handle(Event event) {
+        int i = event.a;
+        int j = event.b;
+        if (j >= 0) {
+            double xi = x(i);
+            double yi = y(i);
+            double xj = x(j);
+            double yj = y(j);
+            double dx = xj - xi;
+            double dy = yj - yi;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            double nx = dx / distance;
+            double ny = dy / distance;
+            double closing = (ux[j] - ux[i]) * nx + (uy[j] - uy[i]) * ny;
+            // Equal masses, elastic: swap the speeds along the line of centres.
+            // Scaling by the shared friction factor does not change that.
+            ux[i] += closing * nx;
+            uy[i] += closing * ny;
+            ux[j] -= closing * nx;
+            uy[j] -= closing * ny;
+            anchor(i, xi, yi);
+            anchor(j, xj, yj);
+            contacts[i]++;
+            contacts[j]++;
+            predict(i);
+            predict(j);
+        } else if (j == CUSHION_X || j == CUSHION_Y) {
+            double x = x(i);
+            double y = y(i);
+            if (j == CUSHION_X) {
+                ux[i] = -ux[i];
+            } else {
+                uy[i] = -uy[i];
+            }
+            anchor(i, x, y);
+            contacts[i]++;
+            predict(i);
+        } else if (j == POCKET) {
+            pocketed[i] = true;
+            contacts[i]++;
+        }
+    }
+
+    // Puts every ball's current state on a fresh clock starting now. The
+    // queue still holds predictions on the old clock; predictAll replaces them.
+    private void restartClock() {
+        double oldTau = tauNow;
+        double oldScale = speedScale();
+        epoch = now;
+        tauNow = tau(now);
+        for (int i = 0; i < count; i++) {
+            setState(i, ax[i] + ux[i] * oldTau, ay[i] + uy[i] * oldTau, ux[i] * oldScale, uy[i] * oldScale);
+        }
+    }
+
+    private void setState(int i, double x, double y, double vx, double vy) {
+        double scale = speedScale();
+        ux[i] = vx / scale;
+        uy[i] = vy / scale;
+        anchor(i, x, y);
+    }
+
+    private void anchor(int i, double x, double y) {
+        ax[i] = x - ux[i] * tauNow;
+        ay[i] = y - uy[i] * tauNow;
+    }
+
+    private void predictAll() {
+        queue.clear();
+        for (int i = 0; i < count; i++) {
+            predict(i);
+        }
+    }
+
+    // Queues ball i's next contact with each cushion axis, pocket and ball
+    private void predict(int i) {
+        if (pocketed[i]) {
+            return;
+        }
+        double r = radius[i];
+        // A ball already past a cushion and still heading out bounces now
+        if (ux[i] < 0) {
+            offer(Math.max(tauNow, (r - ax[i]) / ux[i]), i, CUSHION_X);
+        } else if (ux[i] > 0) {
+            offer(Math.max(tauNow, (width - r - ax[i]) / ux[i]), i, CUSHION_X);
+        }
+        if (uy[i] < 0) {
+            offer(Math.max(tauNow, (r - ay[i]) / uy[i]), i, CUSHION_Y);
+        } else if (uy[i] > 0) {
+            offer(Math.max(tauNow, (height - r - ay[i]) / uy[i]), i, CUSHION_Y);
+        }
+        for (int h = 0; h < holeX.length; h++) {
+            double dx = x(i) - holeX[h];
+            double dy = y(i) - holeY[h];
+            if (dx * dx + dy * dy < holeReach * holeReach) {
+                // Over the pocket already, whichever way it is going
+                offer(tauNow, i, POCKET);
+            } else {
+                offer(contactTau(ax[i] - holeX[h], ay[i] - holeY[h], ux[i], uy[i], holeReach), i, POCKET);
+            }
+        }
+        for (int j = 0; j < count; j++) {
+            if (j != i && !pocketed[j]) {
+                offer(contactTau(ax[j] - ax[i], ay[j] - ay[i], ux[j] - ux[i], uy[j] - uy[i], r + radius[j]), i, j);
+            }
+        }
+    }
+
+    // When the relative position da + du * tau first closes to reach, at or
+    // after now and while still closing; NaN if it never does
+    private double contactTau(double dax, double day, double dux, double duy, double reach) {
+        double px = dax + dux * tauNow;
+        double py = day + duy * tauNow;
+        double b = px * dux + py * duy;
+        double uu = dux * dux + duy * duy;
+        // Not closing, or closing only by rounding error: two touching balls
+        // sliding past each other would otherwise meet again and again at
+        // the same instant
+        if (b >= -1e-9 * Math.sqrt((px * px + py * py) * uu)) {
+            return Double.NaN;
+        }
+        double gap = px * px + py * py - reach * reach;
+        if (gap <= 0) {
+            // Already touching and closing
+            return tauNow;
+        }
+        double d = b * b - uu * gap;
+        if (d < 0) {
+            return Double.NaN;
+        }
+        // The smaller root, written to avoid cancellation
+        return tauNow + gap / (-b + Math.sqrt(d));
+    }
+
+    private void offer(double tau, int a, int b) {
+        // Past contacts, and ones after every ball would have stopped, never happen
+        if (Double.isNaN(tau) || tau < tauNow || (k > 0 && tau >= 0)) {
+            return;
+        }
+        int other = b >= 0 ? contacts[b] : 0;
+        queue.add(new Event(tau, a, b, contacts[a], other));
+    }
+
+    private double tau(double t) {
+        return k == 0 ? t - epoch : -Math.exp(-k * (t - epoch)) / k;
+    }
+
+    // Real velocity over reduced velocity, now
+    private double speedScale() {
+        return k == 0 ? 1 : -k * tauNow;
+    }
+
+    public double x(int i) {
+        return ax[i] + ux[i] * tauNow;
+    }
+
+    public double y(int i) {
+        return ay[i] + uy[i] * tauNow;
+    }
+
+    /** Velocity in pixels per step. */
+    public double vx(int i) {
+        return ux[i] * speedScale();
+    }
+
+    public double vy(int i) {
+        return uy[i] * speedScale();
+    }
+
+    public boolean isPocketed(int i) {
+        return pocketed[i];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getTime() {
+        return now;
+    }
+
+    /** Contacts handled so far. */
+    public long getEventsHandled() {
+        return eventsHandled;
+    }
+
+    /** Predictions dropped because a ball in them had changed course. */
+    public long getStaleEvents() {
+        return staleEvents;
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final double tau;
+        final int a;
+        // The other ball, or what else ball a meets
+        final int b;
+        final int contactsA;
+        final int contactsB;
+
+        Event(double tau, int a, int b, int contactsA, int contactsB) {
+            this.tau = tau;
+            this.a = a;
+            this.b = b;
+            this.contactsA = contactsA;
+            this.contactsB = contactsB;
+        }
+
+        boolean isCurrent(int[] contacts) {
+            return contacts[a] == contactsA && (b < 0 || contacts[b] == contactsB);
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            return Double.compare(tau, other.tau);
+        }
+    }
+}
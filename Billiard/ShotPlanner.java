@@ -0,0 +1,498 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.DoubleAccumulator;
+
+/**
+ * The computer's cue: tries a fan of shots from the table as it stands, each
+ * a direction and a strength for the white ball, plays every one out to the
+ * end on a private copy of the table, and picks the one that comes out best.
+ * Candidates are split into batches across the common fork/join pool. Each
+ * batch copies the starting table into one scratch table and reuses it for
+ * every shot it plays, so nothing is allocated while shots are played out.
+ *
+ * <p>The copy follows the game's own rules for a step (the same move pass,
+ * collisions and pockets), with two shortcuts: a ball slower than
+ * {@link #REST_SPEED} is stopped dead, and pairs of stopped balls are not
+ * checked, so a shot ends as soon as the table is still. A moving ball that
+ * can no longer reach a pocket or another ball is rolled out on its own, and
+ * a shot is given up once it could not pot enough to beat the best so far.
+ *
+ * <p>A shot scores {@link #POT} for each ball it pockets and loses
+ * {@link #WHITE_POTTED} if the white goes down. Then the leave is judged:
+ * how easy the easiest pot is from where the white stops. That counts for
+ * the computer if it potted something and keeps the table, and against it
+ * otherwise, since the next shot is the opponent's.
+ */
+public class ShotPlanner {
+    /** Below this speed, in pixels per step, a ball counts as stopped. */
+    public static final double REST_SPEED = 0.1;
+    private static final double POT = 100;
+    private static final double WHITE_POTTED = 300;
+    private static final double LEAVE = 40;
+    // A shot still going after this many steps is judged where it is
+    private static final int MAX_STEPS = 1500;
+    // How often, in steps, moving balls are checked for being out of play
+    private static final int SETTLE_CHECK = 8;
+    private static final int SHOTS_PER_TASK = 32;
+
+    private final double width;
+    private final double height;
+    private final double radius;
+    private final double friction;
+    private final double[] holeX;
+    private final double[] holeY;
+    private final double holeReach;
+    private final int angles;
+    private final int powers;
+    private final double minPower;
+    private final double maxPower;
+    private final BallIntegrator integrator = BallIntegrator.create();
+
+    // The table to plan from, and each candidate's result
+    private double[] startX = new double[0];
+    private double[] startY = new double[0];
+    private int startCount;
+    private int startWhite;
+    private final double[] values;
+    private final int[] pots;
+    // The best value any shot of this plan has come to so far
+    private final DoubleAccumulator bestValue = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+    /**
+     * A planner for balls of the given radius on a width x height table,
+     * with pockets that take a ball within holeReach of their centre, trying
+     * angles directions times powers strengths from minPower to maxPower.
+     */
+    public ShotPlanner(double width, double height, double radius, double frictionPerStep,
+            double[] holeX, double[] holeY, double holeReach,
+            int angles, int powers, double minPower, double maxPower) {
+        this.width = width;
+        this.height = height;
+        this.radius = radius;
+        this.friction = frictionPerStep;
+        this.holeX = holeX.clone();
+        this.holeY = holeY.clone();
+        this.holeReach = holeReach;
+        this.angles = angles;
+        this.powers = powers;
+        this.minPower = minPower;
+        this.maxPower = maxPower;
+        this.values = new double[angles * powers];
+        this.pots = new int[angles * powers];
+    }
+
+    /** Copies in the table to plan from: count balls at rest, the white in slot white. */
+    public void setTable(double[] x, double[] y, int count, int white) {
+        if (startX.length < count) {
+            startX = new double[count];
+            startY = new double[count];
+        }
+        System.arraycopy(x, 0, startX, 0, count);
+        System.arraycopy(y, 0, startY, 0, count);
+        startCount = count;
+        startWhite = white;
+    }
+
+    /** Plays out every candidate and returns the best; ties go to the first tried. */
+    public Shot plan() {
+        bestValue.reset();
+        ForkJoinPool.commonPool().invoke(new Batch(0, values.length));
+        int best = 0;
+        for (int c = 1; c < values.length; c++) {
+            if (values[c] > values[best]) {
+                best = c;
+            }
+        }
+        double angle = angle(best);
+        double power = power(best);
+        return new Shot(power * Math.cos(angle), power * Math.sin(angle), values[best], pots[best]);
+    }
+
+    /** How many shots each plan tries. */
+    public int getCandidates() {
+        return values.length;
+    }
+
+    private double angle(int candidate) {
+        return 2 * Math.PI * (candidate / powers) / angles;
+    }
+
+    private double power(int candidate) {
+        int step = candidate % powers;
+        return powers == 1 ? maxPower : minPower + (maxPower - minPower) * step / (powers - 1);
+    }
+
+    private void play(int from, int to) {
+        Table table = new Table(startCount);
+        for (int c = from; c < to; c++) {
+            double angle = angle(c);
+            double power = power(c);
+            table.reset(power * Math.cos(angle), power * Math.sin(angle));
+            if (!table.run()) {
+                // Given up on; it could not have been chosen
+                values[c] = Double.NEGATIVE_INFINITY;
+                pots[c] = table.pots;
+                continue;
+            }
+            double value = POT * table.pots;
+            if (table.white < 0) {
+                value -= WHITE_POTTED;
+            } else if (table.pots > 0) {
+                value += LEAVE * table.leave();
+            } else {
+                value -= LEAVE * table.leave();
+            }
+            values[c] = value;
+            pots[c] = table.pots;
+            bestValue.accumulate(value);
+        }
+    }
+
+    /** The chosen shot, as a velocity for the white ball in pixels per step. */
+    public static final class Shot {
+        public final double vx;
+        public final double vy;
+        // What the planner expects of it
+        public final double value;
+        public final int pots;
+
+        Shot(double vx, double vy, double value, int pots) {
+            this.vx = vx;
+            this.vy = vy;
+            this.value = value;
+            this.pots = pots;
+        }
+    }
+
+    private class Batch extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SHOTS_PER_TASK) {
+                play(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Batch(from, mid), new Batch(mid, to));
+        }
+    }
+
+    // One batch's copy of the table, reset from the start for every shot.
+    // The balls in motion are kept in the first slots, so the move pass, the
+    // contact checks and the pocket checks only visit them, and a pair of
+    // balls that are both still is never looked at. The still balls after
+    // them are kept in order of x, which only needs putting right when one
+    // starts or stops, so a moving ball finds the still ones in its reach by
+    // bisection.
+    private final class Table {
+        final double[] x;
+        final double[] y;
+        final double[] dx;
+        final double[] dy;
+        // How far each ball can still roll, filled in by settle
+        final double[] travel;
+        int count;
+        // Balls 0..moving-1 are the ones in motion
+        int moving;
+        // Whether balls moving..count-1 are still in order of x
+        boolean sorted;
+        int white;
+        int pots;
+
+        Table(int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+            dx = new double[capacity];
+            dy = new double[capacity];
+            travel = new double[capacity];
+        }
+
+        void reset(double vx, double vy) {
+            count = startCount;
+            white = startWhite;
+            pots = 0;
+            System.arraycopy(startX, 0, x, 0, count);
+            System.arraycopy(startY, 0, y, 0, count);
+            Arrays.fill(dx, 0, count, 0);
+            Arrays.fill(dy, 0, count, 0);
+            dx[white] = vx;
+            dy[white] = vy;
+            sorted = false;
+            gather();
+        }
+
+        // Steps until every ball has stopped or the white is gone. Returns
+        // false if the shot was given up as unable to beat the best so far.
+        boolean run() {
+            double rest = REST_SPEED * REST_SPEED;
+            for (int step = 0; step < MAX_STEPS && white >= 0 && moving > 0; step++) {
+                integrator.step(x, y, dx, dy, moving, friction, radius, width, height);
+                collide();
+                // From the back, so a ball moved into a pocketed one's slot
+                // has been seen already. Balls knocked on this step are past
+                // the moving ones and are seen too.
+                for (int i = count - 1; i >= 0; i--) {
+                    if (dx[i] == 0 && dy[i] == 0) {
+                        continue;
+                    }
+                    if (inPocket(i)) {
+                        remove(i);
+                    } else if (dx[i] * dx[i] + dy[i] * dy[i] < rest) {
+                        dx[i] = 0;
+                        dy[i] = 0;
+                    }
+                }
+                gather();
+                if (moving > 0 && step % SETTLE_CHECK == SETTLE_CHECK - 1) {
+                    if (!promising()) {
+                        return false;
+                    }
+                    settle(MAX_STEPS - 1 - step);
+                }
+            }
+            return true;
+        }
+
+        // Whether the shot could still beat the best one played so far.
+        // Contacts only share speed out, so no ball will ever go faster than
+        // the root of the sum of the squared speeds now, and a ball that could
+        // not roll to a pocket at that speed will not be potted. At best every
+        // other ball that could is potted and the leave is perfect.
+        private boolean promising() {
+            double needed = (bestValue.get() - LEAVE) / POT - pots;
+            if (needed <= 0 || friction >= 1) {
+                return true;
+            }
+            double energy = 0;
+            for (int i = 0; i < moving; i++) {
+                energy += dx[i] * dx[i] + dy[i] * dy[i];
+            }
+            // Plus two radii for overlapping balls being pushed apart
+            double reach = holeReach + 2 * radius + (Math.sqrt(energy) - REST_SPEED * friction) / (1 - friction);
+            int potential = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == white) {
+                    continue;
+                }
+                for (int h = 0; h < holeX.length; h++) {
+                    double gapX = x[i] - holeX[h];
+                    double gapY = y[i] - holeY[h];
+                    if (gapX * gapX + gapY * gapY < reach * reach) {
+                        if (++potential >= needed) {
+                            return true;
+                        }
+                        break;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // Swaps the balls in motion into the first slots and counts them
+        private void gather() {
+            int before = moving;
+            moving = 0;
+            for (int i = 0; i < count; i++) {
+                if (dx[i] != 0 || dy[i] != 0) {
+                    if (i != moving) {
+                        swap(i, moving);
+                        sorted = false;
+                    }
+                    moving++;
+                }
+            }
+            if (!sorted || moving != before) {
+                // Insertion sort, as the order is nearly right already
+                for (int s = moving + 1; s < count; s++) {
+                    for (int t = s; t > moving && x[t - 1] > x[t]; t--) {
+                        swap(t - 1, t);
+                    }
+                }
+                sorted = true;
+            }
+        }
+
+        private void swap(int i, int j) {
+            double t = x[i];
+            x[i] = x[j];
+            x[j] = t;
+            t = y[i];
+            y[i] = y[j];
+            y[j] = t;
+            t = dx[i];
+            dx[i] = dx[j];
+            dx[j] = t;
+            t = dy[i];
+            dy[i] = dy[j];
+            dy[j] = t;
+            if (white == i) {
+                white = j;
+            } else if (white == j) {
+                white = i;
+            }
+        }
+
+        // A moving ball is out of play once it can no longer reach a pocket
+        // or another ball in the distance friction leaves it, which is less
+        // than (speed - rest speed) / (1 - friction), and no other ball can
+        // reach it either. Cushions only turn it, and however it is turned it
+        // stays within that distance. It ends up where stepping the table
+        // would put it, so it is run out on its own there and then, for at
+        // most steps steps, and the table steps on without it.
+        private void settle(int steps) {
+            if (friction >= 1) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                double speed = i < moving ? Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]) : 0;
+                travel[i] = speed == 0 ? 0 : (speed - REST_SPEED * friction) / (1 - friction);
+            }
+            boolean coasted = false;
+            for (int i = 0; i < moving; i++) {
+                if (!inPlay(i)) {
+                    coast(i, steps);
+                    travel[i] = 0;
+                    coasted = true;
+                }
+            }
+            if (coasted) {
+                gather();
+            }
+        }
+
+        private boolean inPlay(int i) {
+            double hole = holeReach + travel[i];
+            for (int h = 0; h < holeX.length; h++) {
+                double gapX = x[i] - holeX[h];
+                double gapY = y[i] - holeY[h];
+                if (gapX * gapX + gapY * gapY < hole * hole) {
+                    return true;
+                }
+            }
+            for (int j = 0; j < count; j++) {
+                double reach = 2 * radius + travel[i] + travel[j];
+                double gapX = x[j] - x[i];
+                double gapY = y[j] - y[i];
+                if (j != i && gapX * gapX + gapY * gapY < reach * reach) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // The move pass and the stop of a step, for ball i alone
+        private void coast(int i, int steps) {
+            double rest = REST_SPEED * REST_SPEED;
+            for (int step = 0; step < steps && (dx[i] != 0 || dy[i] != 0); step++) {
+                BallIntegrator.step(x, y, dx, dy, i, i + 1, friction, radius, width, height);
+                if (dx[i] * dx[i] + dy[i] * dy[i] < rest) {
+                    dx[i] = 0;
+                    dy[i] = 0;
+                }
+            }
+        }
+
+        // Every pair with a moving ball in it, each once
+        private void collide() {
+            double reach = 2 * radius;
+            for (int a = 0; a < moving; a++) {
+                for (int b = a + 1; b < moving; b++) {
+                    double gapX = x[b] - x[a];
+                    double gapY = y[b] - y[a];
+                    if (Math.abs(gapX) < reach && Math.abs(gapY) < reach) {
+                        BilliardGame.resolve(x, y, dx, dy, a, b, radius);
+                    }
+                }
+                double left = x[a] - reach;
+                double right = x[a] + reach;
+                int b = moving;
+                int end = count;
+                while (b < end) {
+                    int mid = (b + end) >>> 1;
+                    if (x[mid] <= left) {
+                        b = mid + 1;
+                    } else {
+                        end = mid;
+                    }
+                }
+                for (; b < count && x[b] < right; b++) {
+                    double gapY = y[b] - y[a];
+                    if (Math.abs(gapY) < reach) {
+                        BilliardGame.resolve(x, y, dx, dy, a, b, radius);
+                    }
+                }
+            }
+        }
+
+        private boolean inPocket(int i) {
+            for (int h = 0; h < holeX.length; h++) {
+                double gapX = x[i] - holeX[h];
+                double gapY = y[i] - holeY[h];
+                if (gapX * gapX + gapY * gapY < holeReach * holeReach) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void remove(int i) {
+            sorted = false;
+            int last = --count;
+            if (i == white) {
+                white = -1;
+            } else {
+                pots++;
+                if (white == last) {
+                    white = i;
+                }
+            }
+            x[i] = x[last];
+            y[i] = y[last];
+            dx[i] = dx[last];
+            dy[i] = dy[last];
+        }
+
+        // From 0 to 1, how easy the easiest pot is from where the white is:
+        // for each ball and pocket, the white has to reach the spot that sends
+        // the ball straight in, so a thin cut or a long way scores low. Balls
+        // in the way are not looked for.
+        double leave() {
+            double best = 0;
+            for (int b = 0; b < count; b++) {
+                if (b == white) {
+                    continue;
+                }
+                for (int h = 0; h < holeX.length; h++) {
+                    double toHoleX = holeX[h] - x[b];
+                    double toHoleY = holeY[h] - y[b];
+                    double holeDistance = Math.sqrt(toHoleX * toHoleX + toHoleY * toHoleY);
+                    if (holeDistance == 0) {
+                        continue;
+                    }
+                    double ux = toHoleX / holeDistance;
+                    double uy = toHoleY / holeDistance;
+                    double aimX = x[b] - 2 * radius * ux - x[white];
+                    double aimY = y[b] - 2 * radius * uy - y[white];
+                    double aimDistance = Math.sqrt(aimX * aimX + aimY * aimY);
+                    if (aimDistance == 0) {
+                        continue;
+                    }
+                    double cut = (aimX * ux + aimY * uy) / aimDistance;
+                    if (cut <= 0) {
+                        continue;
+                    }
+                    best = Math.max(best, cut * cut / (1 + (aimDistance + holeDistance) / width));
+                }
+            }
+            return best;
+        }
+    }
+}
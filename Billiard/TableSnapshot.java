@@ -0,0 +1,35 @@
+/**
+ * The table as the painter needs it at one moment, in flat arrays: where
+ * each ball on the table is and which ball it is, plus the numbers for the
+ * score line and HUD. The physics thread fills one in and publishes it, and
+ * from then until the painter hands it back it is never written, so the
+ * painter reads it without locks. A few instances go round and round, so
+ * publishing allocates nothing once their arrays have grown to the ball count.
+ */
+public class TableSnapshot {
+    int count;
+    double[] x = new double[0];
+    double[] y = new double[0];
+    // Ball number, which indexes the game's colour table
+    int[] id = new int[0];
+    // Where the white ball is, or NaN once it has been pocketed
+    double whiteX;
+    double whiteY;
+    int score;
+    int computerScore;
+    // Whose turn it is, as shown, when playing the computer; null otherwise
+    String turn;
+    long step;
+    double averageStepNanos;
+    int pairs;
+    long contacts;
+    long staleContacts;
+
+    void ensureCapacity(int n) {
+        if (x.length < n) {
+            x = new double[n];
+            y = new double[n];
+            id = new int[n];
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BallIntegrator} on the incubating vector API: as many balls per
+ * step of the loop as the CPU has double lanes, with the cushion test done as
+ * a lane mask instead of a branch. Needs
+ * {@code --add-modules jdk.incubator.vector} to compile and to be used, so it
+ * lives in its own directory and a plain {@code javac *.java} leaves it out.
+ */
+class VectorBallIntegrator extends BallIntegrator {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void step(double[] x, double[] y, double[] dx, double[] dy, int count,
+            double friction, double r, double width, double height) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            axis(x, dx, i, friction, r, width);
+            axis(y, dy, i, friction, r, height);
+        }
+        step(x, y, dx, dy, i, count, friction, r, width, height);
+    }
+
+    // Same arithmetic, in the same order, as the plain loop
+    private static void axis(double[] p, double[] v, int i, double friction, double r, double size) {
+        DoubleVector velocity = DoubleVector.fromArray(SPECIES, v, i);
+        DoubleVector position = DoubleVector.fromArray(SPECIES, p, i).add(velocity);
+        velocity = velocity.mul(friction);
+        VectorMask<Double> out = position.sub(r).compare(VectorOperators.LT, 0)
+                .or(position.add(r).compare(VectorOperators.GT, size));
+        velocity = velocity.blend(velocity.neg(), out);
+        position.intoArray(p, i);
+        velocity.intoArray(v, i);
+    }
+
+    @Override
+    public String getName() {
+        return "vector, " + SPECIES.length() + " lanes";
+    }
+}
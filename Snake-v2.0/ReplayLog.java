@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary session log: a fixed header followed by one varint per accepted turn,
+ * holding {@code (ticksSincePreviousTurn << 2) | direction}. Everything else
+ * is re-simulated from the seed.
+ *
+ * <pre>
+ * int  magic 'SNK2'
+ * long seed
+ * int  ticks       (filled in on close)
+ * int  dots        (filled in on close)
+ * int  turns       (filled in on close)
+ * </pre>
+ */
+public class ReplayLog {
+    static final int MAGIC = 0x534E4B32;
+    static final int HEADER_SIZE = 24;
+
+    public final long seed;
+    public final int ticks;
+    public final int dots;
+    public final int turns;
+    private final MappedByteBuffer data;
+
+    private ReplayLog(MappedByteBuffer data) throws IOException {
+        data.order(ByteOrder.BIG_ENDIAN);
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a Snake replay");
+        }
+        this.seed = data.getLong(4);
+        this.ticks = data.getInt(12);
+        this.dots = data.getInt(16);
+        this.turns = data.getInt(20);
+        this.data = data;
+    }
+
+    public static ReplayLog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new ReplayLog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Walks the turns in order; {@link #copy} lets a snapshot remember where it was. */
+    public class Cursor {
+        private int position = HEADER_SIZE;
+        private int remaining = turns;
+        private int nextTick = -1;
+        private int nextDirection;
+
+        private Cursor() {
+            advance(0);
+        }
+
+        private void advance(int fromTick) {
+            if (remaining == 0) {
+                nextTick = Integer.MAX_VALUE;
+                return;
+            }
+            remaining--;
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            nextTick = fromTick + (int) (value >>> 2);
+            nextDirection = (int) (value & 3);
+        }
+
+        /** Direction of the next turn due at {@code tick}, or -1 if there is none. */
+        public int poll(int tick) {
+            if (nextTick != tick) {
+                return -1;
+            }
+            int direction = nextDirection;
+            advance(tick);
+            return direction;
+        }
+
+        public Cursor copy() {
+            Cursor copy = new Cursor();
+            copy.position = position;
+            copy.remaining = remaining;
+            copy.nextTick = nextTick;
+            copy.nextDirection = nextDirection;
+            return copy;
+        }
+    }
+
+    /** Appends turns through a small buffer and patches the header totals on close. */
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        private int lastTick;
+        private int turns;
+        private int ticks;
+        private int dots;
+        private boolean closed;
+
+        public Writer(Path path, long seed) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putLong(seed).putInt(0).putInt(0).putInt(0);
+        }
+
+        public synchronized void turn(int tick, int direction) throws IOException {
+            if (buffer.remaining() < 10) {
+                flush();
+            }
+            long value = ((long) (tick - lastTick) << 2) | direction;
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+            lastTick = tick;
+            turns++;
+        }
+
+        /** Records where the session ended; written to the header on close. */
+        public synchronized void finish(int ticks, int dots) {
+            this.ticks = ticks;
+            this.dots = dots;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flush();
+            buffer.putInt(ticks).putInt(dots).putInt(turns).flip();
+            channel.write(buffer, 12);
+            channel.close();
+        }
+    }
+}
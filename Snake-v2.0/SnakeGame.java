@@ -4,9 +4,14 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Supplier;
 
 public class SnakeGame extends JPanel implements ActionListener {
 
@@ -14,11 +19,19 @@ public class SnakeGame extends JPanel implements ActionListener {
     private final int B_HEIGHT = 300;
     private final int DOT_SIZE = 10;
     private final int ALL_DOTS = 900;
-    private final int RAND_POS = 29;
+    private final int COLS = B_WIDTH / DOT_SIZE;
     private final int DELAY = 140;
+    private final int SNAPSHOT_INTERVAL = 256;
+    private final int SEEK_STEP = 100;
 
-    private final int x[] = new int[ALL_DOTS];
-    private final int y[] = new int[ALL_DOTS];
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int UP = 2;
+    private static final int DOWN = 3;
+
+    // One spare slot: move() shifts into x[dots] before the tail is dropped
+    private final int x[] = new int[ALL_DOTS + 1];
+    private final int y[] = new int[ALL_DOTS + 1];
 
     private int dots;
     private int apple_x;
@@ -31,32 +44,71 @@ public class SnakeGame extends JPanel implements ActionListener {
     private boolean inGame = true;
 
     private Timer timer;
+    private final FreeCellSet freeCells = new FreeCellSet(ALL_DOTS);
+
+    // Everything random comes from the seed, so a session is the seed plus its turns
+    private final long seed;
+    private long applesPlaced;
+    private int ticks;
+    private ReplayLog.Writer recorder;
+    private ReplayLog.Cursor replay;
+    private List<Snapshot> snapshots;
+    private int speed;
+    private boolean paused;
 
     public SnakeGame() {
-        initBoard();
+        this(new Random().nextLong(), null);
+    }
+
+    public SnakeGame(long seed, ReplayLog.Writer recorder) {
+        this.seed = seed;
+        this.recorder = recorder;
+        initBoard(new TAdapter(), DELAY);
+    }
+
+    // Plays a recorded session back at speed times the normal rate
+    private SnakeGame(ReplayLog log, int speed) {
+        this.seed = log.seed;
+        this.replay = log.cursor();
+        this.speed = speed;
+        this.snapshots = new ArrayList<>();
+        initBoard(new ReplayAdapter(), Math.max(1, DELAY / speed));
+    }
+
+    // Re-simulates a recorded session with no timer and nothing on screen
+    private SnakeGame(ReplayLog log) {
+        this.seed = log.seed;
+        this.replay = log.cursor();
+        initState();
     }
 
-    private void initBoard() {
-        addKeyListener(new TAdapter());
+    private void initBoard(KeyAdapter adapter, int delay) {
+        addKeyListener(adapter);
         setBackground(Color.black);
         setFocusable(true);
 
         setPreferredSize(new Dimension(B_WIDTH, B_HEIGHT));
-        initGame();
+        initGame(delay);
     }
 
-    private void initGame() {
+    private void initGame(int delay) {
+        initState();
+
+        timer = new Timer(delay, this);
+        timer.start();
+    }
+
+    private void initState() {
         dots = 3;
 
         for (int z = 0; z < dots; z++) {
             x[z] = 50 - z * 10;
             y[z] = 50;
+            freeCells.remove(cellAt(z));
         }
 
         locateApple();
-
-        timer = new Timer(DELAY, this);
-        timer.start();
+        takeSnapshot();
     }
 
     @Override
@@ -81,6 +133,11 @@ public class SnakeGame extends JPanel implements ActionListener {
                 }
             }
 
+            if (replay != null) {
+                g.setColor(Color.gray);
+                g.drawString("Replay " + speed + "x  tick " + ticks + (paused ? "  paused" : ""), 5, 15);
+            }
+
             Toolkit.getDefaultToolkit().sync();
 
         } else {
@@ -100,17 +157,28 @@ public class SnakeGame extends JPanel implements ActionListener {
 
     private void checkApple() {
         if ((x[0] == apple_x) && (y[0] == apple_y)) {
+            // Duplicate the tail so the next move keeps it instead of freeing it.
+            // The snake after that move is the same as when the stale cell past
+            // the tail was uncovered, but that cell is already free and must not
+            // be added to freeCells a second time.
+            x[dots] = x[dots - 1];
+            y[dots] = y[dots - 1];
             dots++;
             locateApple();
         }
     }
 
     private void move() {
+        int oldTail = cellAt(dots - 1);
         for (int z = dots; z > 0; z--) {
             x[z] = x[(z - 1)];
             y[z] = y[(z - 1)];
         }
 
+        if (cellAt(dots - 1) != oldTail) {
+            freeCells.add(oldTail);
+        }
+
         if (leftDirection) {
             x[0] -= DOT_SIZE;
         }
@@ -126,6 +194,10 @@ public class SnakeGame extends JPanel implements ActionListener {
         if (downDirection) {
             y[0] += DOT_SIZE;
         }
+
+        if (x[0] >= 0 && x[0] < B_WIDTH && y[0] >= 0 && y[0] < B_HEIGHT) {
+            freeCells.remove(cellAt(0));
+        }
     }
 
     private void checkCollision() {
@@ -151,69 +223,348 @@ public class SnakeGame extends JPanel implements ActionListener {
             inGame = false;
         }
 
-        if (!inGame) {
+        if (!inGame && timer != null) {
             timer.stop();
         }
     }
 
     private void locateApple() {
-        int r = (int) (Math.random() * RAND_POS);
-        apple_x = ((r * DOT_SIZE));
+        if (freeCells.size() == 0) {
+            inGame = false;
+            return;
+        }
+        int cell = freeCells.get(nextRandom(freeCells.size()));
+        apple_x = (cell % COLS) * DOT_SIZE;
+        apple_y = (cell / COLS) * DOT_SIZE;
+    }
+
+    // The n-th apple is placed from a hash of (seed, n) rather than a stateful
+    // Random, so a snapshot only has to remember how many apples there were.
+    private int nextRandom(int bound) {
+        long z = seed + ++applesPlaced * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) (((z >>> 32) * bound) >>> 32);
+    }
 
-        r = (int) (Math.random() * RAND_POS);
-        apple_y = ((r * DOT_SIZE));
+    private int cellAt(int z) {
+        return (y[z] / DOT_SIZE) * COLS + x[z] / DOT_SIZE;
+    }
+
+    private void step() {
+        if (replay != null) {
+            for (int turn = replay.poll(ticks); turn >= 0; turn = replay.poll(ticks)) {
+                setDirection(turn);
+            }
+        }
+
+        checkApple();
+        checkCollision();
+        move();
+        ticks++;
+
+        if (snapshots != null && ticks % SNAPSHOT_INTERVAL == 0) {
+            takeSnapshot();
+        }
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
-        if (inGame) {
-            checkApple();
-            checkCollision();
-            move();
+        if (inGame && !paused) {
+            step();
+            if (!inGame) {
+                stopRecording();
+            }
         }
 
         repaint();
     }
 
+    private int direction() {
+        if (leftDirection) {
+            return LEFT;
+        }
+        if (rightDirection) {
+            return RIGHT;
+        }
+        return upDirection ? UP : DOWN;
+    }
+
+    private void setDirection(int direction) {
+        leftDirection = direction == LEFT;
+        rightDirection = direction == RIGHT;
+        upDirection = direction == UP;
+        downDirection = direction == DOWN;
+    }
+
+    private void turn(int direction) {
+        if (direction == direction()) {
+            return;
+        }
+        setDirection(direction);
+        if (recorder != null) {
+            try {
+                recorder.turn(ticks, direction);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private void stopRecording() {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.finish(ticks, dots);
+            recorder.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        recorder = null;
+    }
+
     private class TAdapter extends KeyAdapter {
         @Override
         public void keyPressed(KeyEvent e) {
             int key = e.getKeyCode();
 
             if ((key == KeyEvent.VK_LEFT) && (!rightDirection)) {
-                leftDirection = true;
-                upDirection = false;
-                downDirection = false;
+                turn(LEFT);
             }
 
             if ((key == KeyEvent.VK_RIGHT) && (!leftDirection)) {
-                rightDirection = true;
-                upDirection = false;
-                downDirection = false;
+                turn(RIGHT);
             }
 
             if ((key == KeyEvent.VK_UP) && (!downDirection)) {
-                upDirection = true;
-                rightDirection = false;
-                leftDirection = false;
+                turn(UP);
             }
 
             if ((key == KeyEvent.VK_DOWN) && (!upDirection)) {
-                downDirection = true;
-                rightDirection = false;
-                leftDirection = false;
+                turn(DOWN);
             }
         }
     }
 
-    public static void main(String[] args) {
+    private class ReplayAdapter extends KeyAdapter {
+        @Override
+        public void keyPressed(KeyEvent e) {
+            int key = e.getKeyCode();
+
+            if (key == KeyEvent.VK_SPACE) {
+                paused = !paused;
+            }
+
+            if (key == KeyEvent.VK_RIGHT) {
+                seek(ticks + SEEK_STEP);
+            }
+
+            if (key == KeyEvent.VK_LEFT) {
+                seek(Math.max(0, ticks - SEEK_STEP));
+            }
+
+            repaint();
+        }
+    }
+
+    // Jump to the nearest snapshot at or before target, then simulate forward.
+    private void seek(int target) {
+        Snapshot from = snapshots.get(0);
+        for (Snapshot snapshot : snapshots) {
+            if (snapshot.ticks > target) {
+                break;
+            }
+            from = snapshot;
+        }
+        if (from.ticks > ticks || target < ticks) {
+            restore(from);
+        }
+        while (inGame && ticks < target) {
+            step();
+        }
+        if (inGame && !timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    private void takeSnapshot() {
+        if (snapshots != null && (snapshots.isEmpty() || snapshots.get(snapshots.size() - 1).ticks < ticks)) {
+            snapshots.add(new Snapshot());
+        }
+    }
+
+    private void restore(Snapshot snapshot) {
+        ticks = snapshot.ticks;
+        applesPlaced = snapshot.applesPlaced;
+        dots = snapshot.dots;
+        apple_x = snapshot.appleX;
+        apple_y = snapshot.appleY;
+        inGame = snapshot.inGame;
+        setDirection(snapshot.direction);
+        System.arraycopy(snapshot.x, 0, x, 0, snapshot.x.length);
+        System.arraycopy(snapshot.y, 0, y, 0, snapshot.y.length);
+        freeCells.copyFrom(snapshot.freeCells);
+        replay = snapshot.replay.copy();
+    }
+
+    private class Snapshot {
+        final int ticks = SnakeGame.this.ticks;
+        final long applesPlaced = SnakeGame.this.applesPlaced;
+        final int dots = SnakeGame.this.dots;
+        final int appleX = apple_x;
+        final int appleY = apple_y;
+        final boolean inGame = SnakeGame.this.inGame;
+        final int direction = direction();
+        final int[] x = Arrays.copyOf(SnakeGame.this.x, dots + 1);
+        final int[] y = Arrays.copyOf(SnakeGame.this.y, dots + 1);
+        final FreeCellSet freeCells = new FreeCellSet(SnakeGame.this.freeCells);
+        final ReplayLog.Cursor replay = SnakeGame.this.replay.copy();
+    }
+
+    /** Re-simulates a recorded session headlessly; true if it ends where the recording did. */
+    public static boolean verify(ReplayLog log) {
+        SnakeGame game = new SnakeGame(log);
+        while (game.inGame && game.ticks < log.ticks) {
+            game.step();
+        }
+        return game.ticks == log.ticks && game.dots == log.dots;
+    }
+
+    // Empty cells packed at the front of cells[], so a random apple spot is one draw
+    private static class FreeCellSet {
+        private final int[] cells;
+        private final int[] position;
+        private int size;
+
+        FreeCellSet(int capacity) {
+            cells = new int[capacity];
+            position = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                cells[i] = i;
+                position[i] = i;
+            }
+            size = capacity;
+        }
+
+        void remove(int cell) {
+            int index = position[cell];
+            if (index >= size) {
+                return;
+            }
+            int last = cells[--size];
+            cells[index] = last;
+            position[last] = index;
+            cells[size] = cell;
+            position[cell] = size;
+        }
+
+        void add(int cell) {
+            int index = position[cell];
+            if (index < size) {
+                return;
+            }
+            int first = cells[size];
+            cells[index] = first;
+            position[first] = index;
+            cells[size] = cell;
+            position[cell] = size++;
+        }
+
+        FreeCellSet(FreeCellSet other) {
+            cells = other.cells.clone();
+            position = other.position.clone();
+            size = other.size;
+        }
+
+        void copyFrom(FreeCellSet other) {
+            System.arraycopy(other.cells, 0, cells, 0, cells.length);
+            System.arraycopy(other.position, 0, position, 0, position.length);
+            size = other.size;
+        }
+
+        int get(int index) {
+            return cells[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * <pre>
+     * java SnakeGame                              play
+     * java SnakeGame --record run.snk             play and record the session
+     * java SnakeGame --replay run.snk [--speed N] watch it at N times normal speed
+     * java SnakeGame --check a.snk b.snk ...      re-simulate headlessly and compare
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--check")) {
+            check(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Logs are opened here, where a bad path can still fail main; the game
+        // itself, with its Swing parts and Timer, is built on the EDT
+        Supplier<SnakeGame> newGame;
+        if (args.length > 1 && args[0].equals("--record")) {
+            long seed = new Random().nextLong();
+            ReplayLog.Writer writer = new ReplayLog.Writer(Path.of(args[1]), seed);
+            newGame = () -> {
+                SnakeGame game = new SnakeGame(seed, writer);
+                // Closing the window mid-game still leaves a complete log
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        writer.finish(game.ticks, game.dots);
+                        writer.close();
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                }));
+                return game;
+            };
+        } else if (args.length > 1 && args[0].equals("--replay")) {
+            int speed = 1;
+            if (args.length > 3 && args[2].equals("--speed")) {
+                speed = args[3].matches("\\d{1,9}") ? Integer.parseInt(args[3]) : 0;
+                if (speed < 1) {
+                    System.err.println("Usage: java SnakeGame --replay run.snk [--speed N], N a whole number from 1");
+                    System.exit(2);
+                }
+            }
+            int replaySpeed = speed;
+            ReplayLog log = ReplayLog.open(Path.of(args[1]));
+            newGame = () -> new SnakeGame(log, replaySpeed);
+        } else {
+            newGame = SnakeGame::new;
+        }
+
         EventQueue.invokeLater(() -> {
             JFrame frame = new JFrame("Snake Game");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-            frame.add(new SnakeGame());
+            frame.add(newGame.get());
             frame.pack();
             frame.setVisible(true);
             frame.setLocationRelativeTo(null);
         });
     }
+
+    private static void check(String[] files) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        long start = System.nanoTime();
+        int failed = 0;
+        for (String file : files) {
+            ReplayLog log = ReplayLog.open(Path.of(file));
+            if (!verify(log)) {
+                System.out.println("MISMATCH " + file);
+                failed++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d sessions, %d mismatched, %.0f sessions/s%n",
+                files.length, failed, files.length / seconds);
+    }
 }
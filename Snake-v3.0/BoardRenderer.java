@@ -0,0 +1,57 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Persistent back buffer for a cell-based board. Callers redraw only the cells
+ * that changed since the last tick and repaint their {@link #bounds}; painting
+ * the panel is a blit of the clipped region, whatever the snake's length.
+ */
+public class BoardRenderer {
+    private final int cols;
+    private final int unit;
+    private final Color background;
+    private final BufferedImage image;
+    private final Graphics2D g;
+    private final Rectangle bounds = new Rectangle();
+
+    public BoardRenderer(int cols, int rows, int unit, Color background) {
+        this.cols = cols;
+        this.unit = unit;
+        this.background = background;
+        this.image = new BufferedImage(cols * unit, rows * unit, BufferedImage.TYPE_INT_RGB);
+        this.g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        clear();
+    }
+
+    public void clear() {
+        g.setColor(background);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+    }
+
+    public void fillCell(int cell, Color color) {
+        g.setColor(color);
+        g.fillRect(cell % cols * unit, cell / cols * unit, unit, unit);
+    }
+
+    public void fillOval(int cell, Color color) {
+        clearCell(cell);
+        g.setColor(color);
+        g.fillOval(cell % cols * unit, cell / cols * unit, unit, unit);
+    }
+
+    public void clearCell(int cell) {
+        fillCell(cell, background);
+    }
+
+    /** Screen rectangle of a cell. The same instance is reused on every call. */
+    public Rectangle bounds(int cell) {
+        bounds.setBounds(cell % cols * unit, cell / cols * unit, unit, unit);
+        return bounds;
+    }
+
+    public void paint(Graphics g) {
+        // Graphics clips the blit to whatever region the repaint asked for
+        g.drawImage(image, 0, 0, null);
+    }
+}
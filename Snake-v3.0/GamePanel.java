@@ -10,6 +10,14 @@ public class GamePanel extends JPanel implements ActionListener {
     static final int UNIT_SIZE = 25;
     static final int GAME_UNITS = (SCREEN_WIDTH * SCREEN_HEIGHT) / UNIT_SIZE;
     static final int DELAY = 100;
+    static final int COLS = SCREEN_WIDTH / UNIT_SIZE;
+    static final int ROWS = SCREEN_HEIGHT / UNIT_SIZE;
+    static final Color HEAD_COLOR = Color.green;
+    static final Color BODY_COLOR = new Color(45, 180, 0);
+    static final Font HUD_FONT = new Font("Arial", Font.BOLD, 20);
+    static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 40);
+    // -Dsnake.traceTurns=true prints how long each turn waited between key and move
+    static final boolean TRACE_TURNS = Boolean.getBoolean("snake.traceTurns");
     final int[] x = new int[GAME_UNITS];
     final int[] y = new int[GAME_UNITS];
     int bodyParts = 3;
@@ -17,9 +25,19 @@ public class GamePanel extends JPanel implements ActionListener {
     int appleX;
     int appleY;
     char direction = 'R';
+    final TurnQueue turns = new TurnQueue();
     boolean running = false;
     javax.swing.Timer timer;
     Random random;
+    final FreeCellSet freeCells = new FreeCellSet(COLS * ROWS);
+    final Autopilot autopilot = new Autopilot(COLS, ROWS);
+    boolean autopilotOn = false;
+    final BoardRenderer renderer = new BoardRenderer(COLS, ROWS, UNIT_SIZE, Color.black);
+    final Rectangle hudBounds = new Rectangle(0, 0, SCREEN_WIDTH, 50);
+    int vacated = -1;
+    int drawnApple = -1;
+    int drawnScore;
+    boolean boardStale = true;
 
     public GamePanel() {
         random = new Random();
@@ -31,52 +49,111 @@ public class GamePanel extends JPanel implements ActionListener {
     }
 
     public void startGame() {
+        freeCells.remove(cellAt(0));
         newApple();
         running = true;
+        drawBoard();
         timer = new javax.swing.Timer(DELAY, this);
         timer.start();
     }
 
     public void paintComponent(Graphics g) {
-        super.paintComponent(g);
+        if (!running) {
+            super.paintComponent(g);
+        }
         draw(g);
     }
 
     public void draw(Graphics g) {
         if (running) {
-            // Draw apple
-            g.setColor(Color.red);
-            g.fillOval(appleX, appleY, UNIT_SIZE, UNIT_SIZE);
-
-            // Draw snake
-            for (int i = 0; i < bodyParts; i++) {
-                if (i == 0) {
-                    g.setColor(Color.green);
-                } else {
-                    g.setColor(new Color(45, 180, 0));
-                }
-                g.fillRect(x[i], y[i], UNIT_SIZE, UNIT_SIZE);
-            }
-            
+            // Board cells come from the back buffer; only the HUD is drawn live
+            renderer.paint(g);
+
             // Draw score
             g.setColor(Color.white);
-            g.setFont(new Font("Arial", Font.BOLD, 20));
+            g.setFont(HUD_FONT);
             g.drawString("Score: " + applesEaten, 10, 20);
+            if (autopilotOn) {
+                g.drawString(String.format("Autopilot  plan %d us (max %d us)",
+                        autopilot.getLastPlanNanos() / 1000, autopilot.getMaxPlanNanos() / 1000), 10, 45);
+            }
         } else {
             gameOver(g);
         }
     }
 
+    // Redraws the whole back buffer; only needed when a round starts
+    void drawBoard() {
+        renderer.clear();
+        for (int i = bodyParts - 1; i >= 0; i--) {
+            renderer.fillCell(cellAt(i), i == 0 ? HEAD_COLOR : BODY_COLOR);
+        }
+        drawnApple = appleCell();
+        renderer.fillOval(drawnApple, Color.red);
+        drawnScore = applesEaten;
+        boardStale = false;
+        repaint();
+    }
+
+    // Redraws just the cells a tick can touch: the cell the tail left, the old
+    // and new head and a freshly placed apple
+    void drawChanges() {
+        if (vacated >= 0) {
+            renderer.clearCell(vacated);
+            repaint(renderer.bounds(vacated));
+        }
+        int neck = cellAt(1);
+        renderer.fillCell(neck, BODY_COLOR);
+        repaint(renderer.bounds(neck));
+        int head = cellAt(0);
+        renderer.fillCell(head, HEAD_COLOR);
+        repaint(renderer.bounds(head));
+        if (appleCell() != drawnApple) {
+            drawnApple = appleCell();
+            renderer.fillOval(drawnApple, Color.red);
+            repaint(renderer.bounds(drawnApple));
+        }
+        if (applesEaten != drawnScore || autopilotOn) {
+            drawnScore = applesEaten;
+            repaint(hudBounds);
+        }
+    }
+
+    int appleCell() {
+        return (appleY / UNIT_SIZE) * COLS + appleX / UNIT_SIZE;
+    }
+
     public void newApple() {
-        appleX = random.nextInt(SCREEN_WIDTH / UNIT_SIZE) * UNIT_SIZE;
-        appleY = random.nextInt(SCREEN_HEIGHT / UNIT_SIZE) * UNIT_SIZE;
+        int cell = freeCells.random(random);
+        if (cell < 0) {
+            // The snake fills the whole board
+            running = false;
+            return;
+        }
+        appleX = (cell % COLS) * UNIT_SIZE;
+        appleY = (cell / COLS) * UNIT_SIZE;
+    }
+
+    int cellAt(int i) {
+        return (y[i] / UNIT_SIZE) * COLS + x[i] / UNIT_SIZE;
+    }
+
+    boolean inBounds(int i) {
+        return x[i] >= 0 && x[i] < SCREEN_WIDTH && y[i] >= 0 && y[i] < SCREEN_HEIGHT;
     }
 
     public void move() {
+        int oldTail = cellAt(bodyParts - 1);
         for (int i = bodyParts; i > 0; i--) {
             x[i] = x[i - 1];
             y[i] = y[i - 1];
         }
+        // Segments stacked on the tail cell keep it occupied until the last one leaves
+        vacated = -1;
+        if (cellAt(bodyParts - 1) != oldTail) {
+            freeCells.add(oldTail);
+            vacated = oldTail;
+        }
 
         switch (direction) {
             case 'U' -> y[0] = y[0] - UNIT_SIZE;
@@ -84,19 +161,25 @@ public class GamePanel extends JPanel implements ActionListener {
             case 'L' -> x[0] = x[0] - UNIT_SIZE;
             case 'R' -> x[0] = x[0] + UNIT_SIZE;
         }
+        if (inBounds(0)) {
+            freeCells.remove(cellAt(0));
+        }
     }
 
     public void checkApple() {
         if (x[0] == appleX && y[0] == appleY) {
             bodyParts++;
+            // move() already released the old tail, which the snake now keeps
+            freeCells.remove(cellAt(bodyParts - 1));
+            vacated = -1;
             applesEaten++;
             newApple();
         }
     }
 
     public void checkCollisions() {
-        // Check head collision with body
-        for (int i = bodyParts; i > 0; i--) {
+        // Check head collision with body; x[bodyParts] is the cell the tail just left
+        for (int i = bodyParts - 1; i > 0; i--) {
             if (x[0] == x[i] && y[0] == y[i]) {
                 running = false;
             }
@@ -107,33 +190,60 @@ public class GamePanel extends JPanel implements ActionListener {
         }
         
         if (!running) {
+            if (autopilotOn) {
+                // Demo mode keeps going: start the next round straight away
+                resetGame();
+                return;
+            }
             timer.stop();
+            if (TRACE_TURNS) {
+                System.out.println(turns.summary());
+            }
         }
     }
 
     public void gameOver(Graphics g) {
         // Game over text
         g.setColor(Color.red);
-        g.setFont(new Font("Arial", Font.BOLD, 40));
+        g.setFont(TITLE_FONT);
         g.drawString("Game Over", SCREEN_WIDTH/2 - 100, SCREEN_HEIGHT/2 - 40);
         
         // Score display
         g.setColor(Color.white);
-        g.setFont(new Font("Arial", Font.BOLD, 20));
+        g.setFont(HUD_FONT);
         g.drawString("Final Score: " + applesEaten, SCREEN_WIDTH/2 - 70, SCREEN_HEIGHT/2 + 20);
         
         // Restart instruction
         g.drawString("Press SPACE to restart", SCREEN_WIDTH/2 - 100, SCREEN_HEIGHT/2 + 60);
+        g.drawString("Press A for autopilot", SCREEN_WIDTH/2 - 95, SCREEN_HEIGHT/2 + 90);
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
         if (running) {
+            if (autopilotOn) {
+                turns.clear();
+                direction = autopilot.nextDirection(cellAt(0), cellAt(bodyParts - 1), bodyParts, appleCell(), freeCells);
+            } else {
+                char turn = turns.poll(direction, System.nanoTime());
+                if (turn != 0) {
+                    direction = turn;
+                    if (TRACE_TURNS) {
+                        System.out.printf("turn %c: %.1f ms from key to move%n", turn, turns.getLastLatencyNanos() / 1e6);
+                    }
+                }
+            }
             move();
             checkApple();
             checkCollisions();
+            if (!running) {
+                repaint();
+            } else if (boardStale) {
+                drawBoard();
+            } else {
+                drawChanges();
+            }
         }
-        repaint();
     }
 
     public class MyKeyAdapter extends KeyAdapter {
@@ -141,16 +251,26 @@ public class GamePanel extends JPanel implements ActionListener {
         public void keyPressed(KeyEvent e) {
             switch (e.getKeyCode()) {
                 case KeyEvent.VK_LEFT:
-                    if (direction != 'R') direction = 'L';
+                    turns.offer('L', direction, System.nanoTime());
                     break;
                 case KeyEvent.VK_RIGHT:
-                    if (direction != 'L') direction = 'R';
+                    turns.offer('R', direction, System.nanoTime());
                     break;
                 case KeyEvent.VK_UP:
-                    if (direction != 'D') direction = 'U';
+                    turns.offer('U', direction, System.nanoTime());
                     break;
                 case KeyEvent.VK_DOWN:
-                    if (direction != 'U') direction = 'D';
+                    turns.offer('D', direction, System.nanoTime());
+                    break;
+                case KeyEvent.VK_A:
+                    if (!running) {
+                        // From the game-over screen, A starts a new round on autopilot
+                        autopilotOn = true;
+                        resetGame();
+                    } else {
+                        autopilotOn = !autopilotOn;
+                        repaint(hudBounds);
+                    }
                     break;
                 case KeyEvent.VK_SPACE:
                     if (!running) {
@@ -165,12 +285,16 @@ public class GamePanel extends JPanel implements ActionListener {
         bodyParts = 3;
         applesEaten = 0;
         direction = 'R';
+        turns.clear();
         running = true;
         Arrays.fill(x, 0);
         Arrays.fill(y, 0);
         x[0] = 0;
         y[0] = 0;
+        freeCells.fill();
+        freeCells.remove(cellAt(0));
         newApple();
+        boardStale = true;
         timer.start();
     }
 }
\ No newline at end of file
@@ -1,9 +1,6 @@
 module org.example {
     requires javafx.controls;
-    requires javafx.fxml;
-    requires javafx.media;
-    requires javafx.swing;
-    requires javafx.web;
+    requires jdk.jfr;
     
     opens org.example to javafx.graphics;
 }
\ No newline at end of file
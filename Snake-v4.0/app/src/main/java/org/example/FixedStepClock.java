@@ -0,0 +1,91 @@
+package org.example;
+
+/**
+ * Turns pulse timestamps into a whole number of fixed-length logic ticks.
+ * Time left over after the last whole tick is carried into the next pulse
+ * rather than dropped, so the game runs at its tick rate whatever the display
+ * refresh rate, and {@link #alpha()} says how far the view should be between
+ * the last tick and the next. After a stall only a few ticks are caught up;
+ * the rest of the backlog is skipped instead of fast-forwarding the game.
+ */
+public class FixedStepClock {
+    public static final int MIN_RATE = 5;
+    public static final int MAX_RATE = 240;
+
+    private final int maxCatchUp;
+    private int rate;
+    private long stepNanos;
+    private long accumulator;
+    private long last = -1;
+    private boolean paused;
+    private long skipped;
+
+    public FixedStepClock(int rate, int maxCatchUp) {
+        this.maxCatchUp = maxCatchUp;
+        setRate(rate);
+    }
+
+    /**
+     * Logic ticks due at pulse time {@code now}, in nanoseconds. None while
+     * paused, and none on the first pulse after a reset or resume, which only
+     * sets the starting point.
+     */
+    public int advance(long now) {
+        if (paused || last < 0) {
+            last = now;
+            return 0;
+        }
+        accumulator += Math.max(0, now - last);
+        last = now;
+        long due = accumulator / stepNanos;
+        if (due > maxCatchUp) {
+            skipped += due - maxCatchUp;
+            accumulator %= stepNanos;
+            return maxCatchUp;
+        }
+        accumulator -= due * stepNanos;
+        return (int) due;
+    }
+
+    /** How far into the next tick we are, from 0 up to but not including 1. */
+    public double alpha() {
+        return (double) accumulator / stepNanos;
+    }
+
+    /** Sets ticks per second, clamped to 5..240, keeping the view where it is between ticks. */
+    public void setRate(int hz) {
+        double alpha = stepNanos == 0 ? 0 : alpha();
+        rate = Math.max(MIN_RATE, Math.min(MAX_RATE, hz));
+        stepNanos = 1_000_000_000L / rate;
+        accumulator = (long) (alpha * stepNanos);
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    /** Stops ticks until {@link #resume()}; the time in between does not count. */
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        paused = false;
+        last = -1;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /** Starts again from the beginning of a tick. */
+    public void reset() {
+        accumulator = 0;
+        last = -1;
+    }
+
+    /** Ticks skipped because they were past the catch-up limit. */
+    public long getSkippedTicks() {
+        return skipped;
+    }
+}
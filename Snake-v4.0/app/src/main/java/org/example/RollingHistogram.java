@@ -0,0 +1,95 @@
+package org.example;
+
+/**
+ * The last {@code window} samples, in nanoseconds, with a histogram of just
+ * those samples kept alongside: sixteen buckets per power of two, as in the
+ * Swing games' LatencyHistogram, so percentiles come out within about 6%.
+ * Recording a sample evicts the oldest and adjusts two counters, and nothing
+ * is allocated after construction. Single-threaded: the FX thread records and
+ * reads.
+ */
+public class RollingHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private final long[] samples;
+    private final int[] counts = new int[64 << SUB_BITS];
+    private int next;
+    private int size;
+
+    public RollingHistogram(int window) {
+        samples = new long[window];
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        if (size == samples.length) {
+            counts[index(samples[next])]--;
+        } else {
+            size++;
+        }
+        samples[next] = nanos;
+        counts[index(nanos)]++;
+        next = next + 1 == samples.length ? 0 : next + 1;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = (index >> SUB_BITS) - 1;
+        return (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << shift;
+    }
+
+    /** Smallest bucket at or above the given fraction of the window, in nanoseconds. */
+    public long percentile(double p) {
+        if (size == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * size));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return lowerBound(i);
+            }
+        }
+        return getMax();
+    }
+
+    /** Exact largest sample in the window. */
+    public long getMax() {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** The i-th sample in the window, oldest first. */
+    public long get(int i) {
+        int start = size == samples.length ? next : 0;
+        return samples[(start + i) % samples.length];
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(counts, 0);
+        next = 0;
+        size = 0;
+    }
+}
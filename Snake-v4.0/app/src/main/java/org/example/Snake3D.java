@@ -2,7 +2,7 @@ package org.example;
 
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.geometry.Point3D;
+import javafx.application.Platform;
 import javafx.scene.*;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
@@ -11,6 +11,7 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.VBox;
 import javafx.geometry.Pos;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Box;
 import javafx.scene.shape.Sphere;
 import javafx.scene.text.Font;
@@ -18,8 +19,13 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.scene.transform.Rotate;
 import javafx.stage.Stage;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.Random;
 
 public class Snake3D extends Application {
@@ -28,7 +34,36 @@ public class Snake3D extends Application {
     private static final int DEPTH = 800;
     private static final int CELL_SIZE = 30;
     private static final int BOARD_SIZE = 400;
-    private static final long FRAME_DELAY = 100_000_000;
+    // Logic ticks per second; - and + step through these
+    private static final int[] TICK_RATES = {5, 10, 15, 20, 30, 60, 120, 240};
+    private static final int DEFAULT_RATE_LEVEL = 1;
+    // Ticks one pulse may run to catch up after a stall
+    private static final int MAX_CATCH_UP = 5;
+    // Samples the performance HUD keeps for its percentiles and export
+    private static final int PERF_WINDOW = 1024;
+    private static final long HUD_REFRESH_NANOS = 500_000_000L;
+    // Stress round started with G: a board big enough for a 5,000-segment snake
+    private static final int STRESS_CELLS = 101;
+    private static final int STRESS_LENGTH = 5000;
+    // Arena started with N: AI snakes on a big board, drawn through a window
+    // of ARENA_VIEW cells around the snake being followed
+    private static final int ARENA_CELLS = 256;
+    private static final int ARENA_SNAKES = 600;
+    private static final int ARENA_VIEW = 48;
+    // -Dsnake.startupProbe=true prints FIRST_FRAME_MARKER on the first frame
+    // and quits, for StartupBenchmark; -Dsnake.train=true plays through the
+    // start screen, both body renderers, a stress round and the arena, then
+    // quits, so an AppCDS training run loads the classes a real session does
+    static final String FIRST_FRAME_MARKER = "snake3d: first frame";
+    private static final boolean STARTUP_PROBE = Boolean.getBoolean("snake.startupProbe");
+    private static final boolean TRAINING_RUN = Boolean.getBoolean("snake.train");
+    
+    // Materials are shared by every node that uses them rather than made per node
+    private final PhongMaterial BOARD_MATERIAL = new PhongMaterial(Color.LIMEGREEN);
+    private final PhongMaterial WALL_MATERIAL = new PhongMaterial(Color.LIGHTCYAN);
+    private final PhongMaterial HEAD_MATERIAL = new PhongMaterial(Color.DARKGREEN);
+    private final PhongMaterial BODY_MATERIAL = new PhongMaterial(Color.GREEN);
+    private final PhongMaterial FOOD_MATERIAL = new PhongMaterial(Color.CRIMSON);
     
     private Group root = new Group();
     private Group gameGroup = new Group();
@@ -39,13 +74,44 @@ public class Snake3D extends Application {
     private final Rotate rotateX = new Rotate(0, Rotate.X_AXIS);
     private final Rotate rotateY = new Rotate(0, Rotate.Y_AXIS);
     
-    private List<Box> snake = new ArrayList<>();
+    // The game itself; everything below is just its picture
+    private SnakeModel model;
+    private int boardCells = BOARD_SIZE / CELL_SIZE;
+    private int initialLength = 1;
+    
+    private Box head;
+    // Body segments behind the head, nearest first, as one node each. Each
+    // tick only the tail node moves: it fills the cell the head just left.
+    private final ArrayDeque<Box> body = new ArrayDeque<>();
+    // The body segments' own parent, so a rebuild clears one list rather
+    // than picking them out of everything else in gameGroup
+    private final Group bodyGroup = new Group();
+    // Segments from earlier rounds, reused before any new Box is made
+    private final ArrayDeque<Box> segmentPool = new ArrayDeque<>();
+    // The same body as a single mesh; M switches between the two
+    private SnakeMeshBody meshBody;
+    private boolean meshMode = false;
+    // Performance HUD: F3 shows and hides it, E exports its samples
+    private Text perfText;
+    private boolean perfVisible = true;
+    private final RollingHistogram pulseTimes = new RollingHistogram(PERF_WINDOW);
+    private final RollingHistogram tickTimes = new RollingHistogram(PERF_WINDOW);
+    // Arena mode: the snakes are simulated off the scene graph and only the
+    // cells in view are meshed; F moves the view to the next snake
+    private SnakeArena arena;
+    private SnakeArenaMesh arenaMesh;
+    private boolean arenaMode = false;
+    private int followed;
+    private long lastPulse;
+    private long lastHudRefresh;
+    private int nodeCount;
+    private final Random random = new Random();
     private Sphere food;
-    private Point3D direction = new Point3D(1, 0, 0);
     private AnimationTimer gameLoop;
+    private final FixedStepClock clock = new FixedStepClock(TICK_RATES[DEFAULT_RATE_LEVEL], MAX_CATCH_UP);
+    private int rateLevel = DEFAULT_RATE_LEVEL;
     private Text scoreText;
     private Text gameOverText;
-    private int score = 0;
     private boolean gameRunning = false;
 
     @Override
@@ -61,6 +127,68 @@ public class Snake3D extends Application {
         primaryStage.setScene(scene);
         primaryStage.setResizable(false);
         primaryStage.show();
+        
+        if (STARTUP_PROBE) {
+            probeFirstFrame(scene);
+        }
+        if (TRAINING_RUN) {
+            train();
+        }
+    }
+    
+    // The first pulse after show() lays out and syncs the first frame; the
+    // report is queued behind it so it goes out once that pulse has finished
+    private void probeFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            Platform.runLater(() -> {
+                long sinceLaunch = ProcessHandle.current().info().startInstant()
+                        .map(start -> Duration.between(start, Instant.now()).toMillis())
+                        .orElse(-1L);
+                System.out.println(FIRST_FRAME_MARKER + " " + sinceLaunch + " ms after launch");
+                System.out.flush();
+                Platform.exit();
+            });
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+    
+    // Scripted session for the training run: start screen, a normal game,
+    // the mesh body, a stress round, the arena, then exit
+    private void train() {
+        new AnimationTimer() {
+            private long started;
+            private int step;
+            
+            @Override
+            public void handle(long now) {
+                if (started == 0) {
+                    started = now;
+                }
+                long elapsed = now - started;
+                if (step == 0 && elapsed > 500_000_000L) {
+                    startGame();
+                    step++;
+                } else if (step == 1 && elapsed > 1_500_000_000L) {
+                    meshMode = !meshMode;
+                    buildBody();
+                    resetPerf();
+                    step++;
+                } else if (step == 2 && elapsed > 2_000_000_000L) {
+                    boardCells = STRESS_CELLS;
+                    initialLength = STRESS_LENGTH;
+                    startGame();
+                    step++;
+                } else if (step == 3 && elapsed > 2_500_000_000L) {
+                    startArena();
+                    step++;
+                } else if (step == 4 && elapsed > 3_500_000_000L) {
+                    stop();
+                    Platform.exit();
+                }
+            }
+        }.start();
     }
 
     private void createStartScreen() {
@@ -115,11 +243,47 @@ public class Snake3D extends Application {
 
     private void startGame() {
         gameRunning = true;
-        score = 0;
+        arenaMode = false;
+        clock.reset();
+        clock.resume();
         root.getChildren().clear();
         root.getChildren().add(gameGroup);
         setupScene();
     }
+    
+    private void startArena() {
+        gameRunning = true;
+        arenaMode = true;
+        clock.reset();
+        clock.resume();
+        root.getChildren().clear();
+        root.getChildren().add(gameGroup);
+        gameGroup.getChildren().clear();
+        
+        if (arena == null) {
+            arena = new SnakeArena(ARENA_CELLS, ARENA_CELLS, ARENA_SNAKES,
+                    Runtime.getRuntime().availableProcessors(), random.nextLong());
+            arenaMesh = new SnakeArenaMesh(CELL_SIZE);
+        } else {
+            arena.reset();
+        }
+        followed = 0;
+        
+        int boardSize = ARENA_VIEW * CELL_SIZE + 10;
+        Box board = new Box(boardSize, 20, boardSize);
+        board.setMaterial(BOARD_MATERIAL);
+        gameGroup.getChildren().add(board);
+        
+        gameGroup.setTranslateX(150);
+        gameGroup.setTranslateY(200);
+        gameGroup.setTranslateZ(0);
+        
+        createWalls(boardSize);
+        gameGroup.getChildren().add(arenaMesh.getView());
+        addHud();
+        drawArena();
+        startLoop();
+    }
 
     private void setupCamera() {
         camera = new PerspectiveCamera(true);
@@ -133,27 +297,54 @@ public class Snake3D extends Application {
 
     private void setupScene() {
         gameGroup.getChildren().clear();
-        snake.clear();
+        if (head != null) {
+            segmentPool.add(head);
+        }
+        segmentPool.addAll(body);
+        body.clear();
+        if (meshBody == null) {
+            meshBody = new SnakeMeshBody(CELL_SIZE, BODY_MATERIAL, 1024);
+        }
+        meshBody.clear();
         
-        Box board = new Box(BOARD_SIZE, 20, BOARD_SIZE);
+        if (model == null || model.getCols() != boardCells) {
+            model = new SnakeModel(boardCells, boardCells, random);
+        }
+        model.reset(initialLength);
+        
+        int boardSize = boardCells * CELL_SIZE + 10;
+        Box board = new Box(boardSize, 20, boardSize);
         board.setTranslateY(0);
-        board.setMaterial(new javafx.scene.paint.PhongMaterial(Color.LIMEGREEN));
+        board.setMaterial(BOARD_MATERIAL);
         gameGroup.getChildren().add(board);
         
         gameGroup.setTranslateX(150);
         gameGroup.setTranslateY(200);
         gameGroup.setTranslateZ(0);
         
-        createWalls();
+        createWalls(boardSize);
         
-        Box snakeHead = new Box(CELL_SIZE, CELL_SIZE, CELL_SIZE);
-        snakeHead.setMaterial(new javafx.scene.paint.PhongMaterial(Color.DARKGREEN));
-        snakeHead.setTranslateX(0);
-        snakeHead.setTranslateY(CELL_SIZE/2);
-        snakeHead.setTranslateZ(0);
-        snake.add(snakeHead);
-        gameGroup.getChildren().add(snakeHead);
+        head = obtainSegment();
+        head.setMaterial(HEAD_MATERIAL);
+        place(head, model.getHead());
+        gameGroup.getChildren().add(head);
+        gameGroup.getChildren().add(bodyGroup);
+        buildBody();
+        addHud();
         
+        if (food == null) {
+            food = new Sphere(CELL_SIZE/2);
+            food.setScaleX(1.3);
+            food.setScaleY(1.5);
+            food.setScaleZ(1.3);
+            food.setMaterial(FOOD_MATERIAL);
+        }
+        gameGroup.getChildren().add(food);
+        place(food, model.getFood());
+        startLoop();
+    }
+    
+    private void addHud() {
         scoreText = new Text("Score: 0");
         scoreText.setFont(Font.font(20));
         scoreText.setTranslateX(20);
@@ -161,46 +352,53 @@ public class Snake3D extends Application {
         scoreText.setFill(Color.WHITE);
         gameGroup.getChildren().add(scoreText);
         
-        spawnFood();
-        
-        gameLoop = new AnimationTimer() {
-            private long lastUpdate = 0;
-            
-            @Override
-            public void handle(long now) {
-                if (gameRunning && now - lastUpdate >= FRAME_DELAY) {
-                    moveSnake();
-                    checkCollisions();
-                    lastUpdate = now;
+        perfText = new Text();
+        perfText.setFont(Font.font("Monospaced", 13));
+        perfText.setTranslateX(20);
+        perfText.setTranslateY(55);
+        perfText.setFill(Color.WHITE);
+        perfText.setVisible(perfVisible);
+        gameGroup.getChildren().add(perfText);
+        resetPerf();
+    }
+    
+    private void startLoop() {
+        // One loop for the life of the app: it keeps pulsing through pauses
+        // and game over, and the clock decides when logic runs
+        if (gameLoop == null) {
+            gameLoop = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    pulse(now);
                 }
-            }
-        };
-        gameLoop.start();
+            };
+            gameLoop.start();
+        }
     }
 
-    private void createWalls() {
+    private void createWalls(int boardSize) {
         int thickness = 10;
         
-        Box bottomWall = new Box(BOARD_SIZE, thickness, BOARD_SIZE);
+        Box bottomWall = new Box(boardSize, thickness, boardSize);
         bottomWall.setTranslateY(-thickness/2);
-        bottomWall.setMaterial(new javafx.scene.paint.PhongMaterial(Color.LIGHTCYAN));
+        bottomWall.setMaterial(WALL_MATERIAL);
         gameGroup.getChildren().add(bottomWall);
         
         Box[] sideWalls = {
-            new Box(thickness, thickness, BOARD_SIZE),
-            new Box(thickness, thickness, BOARD_SIZE),
-            new Box(BOARD_SIZE, thickness, thickness),
-            new Box(BOARD_SIZE, thickness, thickness)
+            new Box(thickness, thickness, boardSize),
+            new Box(thickness, thickness, boardSize),
+            new Box(boardSize, thickness, thickness),
+            new Box(boardSize, thickness, thickness)
         };
         
-        double halfSize = BOARD_SIZE/2;
+        double halfSize = boardSize/2;
         sideWalls[0].setTranslateX(-halfSize - thickness/2);
         sideWalls[1].setTranslateX(halfSize + thickness/2);
         sideWalls[2].setTranslateZ(-halfSize - thickness/2);
         sideWalls[3].setTranslateZ(halfSize + thickness/2);
         
         for (Box wall : sideWalls) {
-            wall.setMaterial(new javafx.scene.paint.PhongMaterial(Color.LIGHTCYAN));
+            wall.setMaterial(WALL_MATERIAL);
             gameGroup.getChildren().add(wall);
         }
     }
@@ -244,23 +442,88 @@ public class Snake3D extends Application {
             switch(event.getCode()) {
                 case W:
                 case UP:
-                    direction = new Point3D(0, 0, -1);
+                    if (model != null) {
+                        model.setDirection(0, -1);
+                    }
                     break;
                 case S:
                 case DOWN:
-                    direction = new Point3D(0, 0, 1);
+                    if (model != null) {
+                        model.setDirection(0, 1);
+                    }
                     break;
                 case A:
                 case LEFT:
-                    direction = new Point3D(-1, 0, 0);
+                    if (model != null) {
+                        model.setDirection(-1, 0);
+                    }
                     break;
                 case D:
                 case RIGHT:
-                    direction = new Point3D(1, 0, 0);
+                    if (model != null) {
+                        model.setDirection(1, 0);
+                    }
                     break;
                 case R:
                     if (!gameRunning) {
+                        boardCells = BOARD_SIZE / CELL_SIZE;
+                        initialLength = 1;
+                        startGame();
+                    }
+                    break;
+                case M:
+                    if (gameRunning && !arenaMode) {
+                        meshMode = !meshMode;
+                        buildBody();
+                        resetPerf();
+                    }
+                    break;
+                case F3:
+                    perfVisible = !perfVisible;
+                    if (perfText != null) {
+                        perfText.setVisible(perfVisible);
+                    }
+                    break;
+                case E:
+                    exportPerf();
+                    break;
+                case P:
+                    if (gameRunning) {
+                        if (clock.isPaused()) {
+                            clock.resume();
+                        } else {
+                            clock.pause();
+                        }
+                    }
+                    break;
+                case MINUS:
+                case SUBTRACT:
+                    setRateLevel(rateLevel - 1);
+                    break;
+                case EQUALS:
+                case PLUS:
+                case ADD:
+                    setRateLevel(rateLevel + 1);
+                    break;
+                case G:
+                    // Stress round: a 5,000-segment snake on a board to fit it
+                    boardCells = STRESS_CELLS;
+                    initialLength = STRESS_LENGTH;
+                    startGame();
+                    break;
+                case N:
+                    if (arenaMode) {
+                        boardCells = BOARD_SIZE / CELL_SIZE;
+                        initialLength = 1;
                         startGame();
+                    } else {
+                        startArena();
+                    }
+                    break;
+                case F:
+                    if (arenaMode) {
+                        followNext();
+                        drawArena();
                     }
                     break;
             }
@@ -269,78 +532,283 @@ public class Snake3D extends Application {
         root.getTransforms().addAll(rotateX, rotateY);
     }
     
-    private void moveSnake() {
-        for (int i = snake.size() - 1; i > 0; i--) {
-            Box current = snake.get(i);
-            Box next = snake.get(i-1);
-            current.setTranslateX(next.getTranslateX());
-            current.setTranslateY(next.getTranslateY());
-            current.setTranslateZ(next.getTranslateZ());
+    // Brings the nodes up to date after a tick. The body between head and
+    // tail stays where it is, so only the head and the tail are touched: the
+    // tail segment fills the cell the head just left, or when the snake ate a
+    // new segment does. The same scene-graph work whatever the length, in
+    // either mode.
+    private void project() {
+        int neck = model.getPreviousHead();
+        place(head, model.getHead());
+        if (model.ate()) {
+            if (meshMode) {
+                meshBody.pushHead(x(neck), y(), z(neck));
+            } else {
+                Box segment = obtainSegment();
+                segment.setMaterial(BODY_MATERIAL);
+                place(segment, neck);
+                body.addFirst(segment);
+                bodyGroup.getChildren().add(segment);
+            }
+            place(food, model.getFood());
+            scoreText.setText("Score: " + model.getScore());
+        } else if (model.length() > 1) {
+            if (meshMode) {
+                meshBody.pushHead(x(neck), y(), z(neck));
+                meshBody.popTail();
+            } else {
+                Box tail = body.pollLast();
+                place(tail, neck);
+                body.addFirst(tail);
+            }
         }
-        
-        Box head = snake.get(0);
-        head.setTranslateX(head.getTranslateX() + direction.getX() * CELL_SIZE);
-        head.setTranslateY(head.getTranslateY() + direction.getY() * CELL_SIZE);
-        head.setTranslateZ(head.getTranslateZ() + direction.getZ() * CELL_SIZE);
     }
     
-    private void spawnFood() {
-        if (food != null) {
-            gameGroup.getChildren().remove(food);
+    // Draws the head and tail part of the way through the next move, at
+    // fraction alpha of a tick. Cells in between never move, so the head
+    // slides out of the neck and the tail slides into the cell ahead of it,
+    // whatever the length.
+    private void interpolate(double alpha) {
+        int neck = model.getPreviousHead();
+        int headCell = model.getHead();
+        head.setTranslateX(lerp(x(neck), x(headCell), alpha));
+        head.setTranslateZ(lerp(z(neck), z(headCell), alpha));
+        if (model.length() < 2) {
+            return;
+        }
+        // When the snake just ate, the tail stood still
+        int tailCell = model.segment(model.length() - 1);
+        int from = model.getVacated() >= 0 ? model.getVacated() : tailCell;
+        double tailX = lerp(x(from), x(tailCell), alpha);
+        double tailZ = lerp(z(from), z(tailCell), alpha);
+        if (meshMode) {
+            meshBody.moveTail(tailX, y(), tailZ);
+        } else {
+            Box tail = body.peekLast();
+            tail.setTranslateX(tailX);
+            tail.setTranslateZ(tailZ);
+        }
+    }
+    
+    // Meshes the window around the followed snake; whatever else is on the
+    // board stays out of the scene graph
+    private void drawArena() {
+        if (!arena.isAlive(followed)) {
+            followNext();
+        }
+        int left = 0;
+        int top = 0;
+        if (arena.isAlive(followed)) {
+            int cell = arena.headCell(followed);
+            left = Math.max(0, Math.min(ARENA_CELLS - ARENA_VIEW, cell % ARENA_CELLS - ARENA_VIEW / 2));
+            top = Math.max(0, Math.min(ARENA_CELLS - ARENA_VIEW, cell / ARENA_CELLS - ARENA_VIEW / 2));
+        }
+        arenaMesh.update(arena, left, top, ARENA_VIEW, CELL_SIZE, y());
+        scoreText.setText(String.format("Arena: %d/%d alive, %d in view, following #%d (length %d, score %d)",
+                arena.getAliveCount(), arena.getSnakeCount(), arenaMesh.getVisibleSnakes(),
+                followed, arena.length(followed), arena.getScore(followed)));
+    }
+    
+    private void followNext() {
+        for (int i = 1; i <= arena.getSnakeCount(); i++) {
+            int snake = (followed + i) % arena.getSnakeCount();
+            if (arena.isAlive(snake)) {
+                followed = snake;
+                return;
+            }
+        }
+    }
+    
+    private static double lerp(double from, double to, double alpha) {
+        return from + (to - from) * alpha;
+    }
+    
+    private void setRateLevel(int level) {
+        rateLevel = Math.max(0, Math.min(TICK_RATES.length - 1, level));
+        clock.setRate(TICK_RATES[rateLevel]);
+    }
+    
+    // Lays the whole body out from the model in the current mode, dropping
+    // the other one. Only for a new round or a mode switch.
+    private void buildBody() {
+        bodyGroup.getChildren().clear();
+        segmentPool.addAll(body);
+        body.clear();
+        meshBody.clear();
+        gameGroup.getChildren().remove(meshBody.getView());
+        if (meshMode) {
+            for (int i = model.length() - 1; i > 0; i--) {
+                int cell = model.segment(i);
+                meshBody.pushHead(x(cell), y(), z(cell));
+            }
+            gameGroup.getChildren().add(meshBody.getView());
+        } else {
+            for (int i = 1; i < model.length(); i++) {
+                Box segment = obtainSegment();
+                segment.setMaterial(BODY_MATERIAL);
+                place(segment, model.segment(i));
+                body.addLast(segment);
+            }
+            bodyGroup.getChildren().addAll(body);
+        }
+    }
+    
+    // Board cells to scene coordinates: the middle cell sits on the origin
+    private double x(int cell) {
+        return (model.col(cell) - boardCells / 2) * CELL_SIZE;
+    }
+    
+    private double y() {
+        return CELL_SIZE / 2;
+    }
+    
+    private double z(int cell) {
+        return (model.row(cell) - boardCells / 2) * CELL_SIZE;
+    }
+    
+    private void place(javafx.scene.Node node, int cell) {
+        node.setTranslateX(x(cell));
+        node.setTranslateY(y());
+        node.setTranslateZ(z(cell));
+    }
+    
+    // One AnimationTimer pulse: run the ticks that are due, place the nodes
+    // in between, and measure both, for the HUD and for JFR
+    private void pulse(long now) {
+        SnakePulse pulseEvent = new SnakePulse();
+        pulseEvent.begin();
+        long interval = lastPulse == 0 ? 0 : now - lastPulse;
+        lastPulse = now;
+        if (interval > 0) {
+            pulseTimes.record(interval);
         }
         
-        Sphere egg = new Sphere(CELL_SIZE/2);
-        egg.setScaleX(1.3);
-        egg.setScaleY(1.5);
-        egg.setScaleZ(1.3);
-        egg.setMaterial(new javafx.scene.paint.PhongMaterial(Color.CRIMSON));
-        food = egg;
-        
-        Random rand = new Random();
-        int halfCells = (BOARD_SIZE/CELL_SIZE)/2;
-        food.setTranslateX((rand.nextInt(halfCells*2) - halfCells) * CELL_SIZE);
-        food.setTranslateY(CELL_SIZE/2);
-        food.setTranslateZ((rand.nextInt(halfCells*2) - halfCells) * CELL_SIZE);
+        int ran = 0;
+        long logicNanos = 0;
+        if (gameRunning) {
+            for (int ticks = clock.advance(now); ticks > 0; ticks--) {
+                long start = System.nanoTime();
+                SnakeTick tickEvent = new SnakeTick();
+                tickEvent.begin();
+                boolean alive;
+                if (arenaMode) {
+                    arena.tick();
+                    alive = true;
+                } else {
+                    alive = model.tick();
+                    if (alive) {
+                        project();
+                    }
+                }
+                tickEvent.end();
+                if (tickEvent.shouldCommit()) {
+                    tickEvent.length = arenaMode ? arena.getAliveCount() : model.length();
+                    tickEvent.ate = !arenaMode && model.ate();
+                    tickEvent.alive = alive;
+                    tickEvent.commit();
+                }
+                long elapsed = System.nanoTime() - start;
+                tickTimes.record(elapsed);
+                logicNanos += elapsed;
+                ran++;
+                if (!alive) {
+                    gameOver();
+                    break;
+                }
+            }
+            if (arenaMode) {
+                if (ran > 0) {
+                    drawArena();
+                }
+            } else if (gameRunning) {
+                interpolate(clock.alpha());
+            }
+        }
         
-        gameGroup.getChildren().add(food);
+        if (now - lastHudRefresh >= HUD_REFRESH_NANOS) {
+            lastHudRefresh = now;
+            refreshPerfText();
+        }
+        pulseEvent.end();
+        if (pulseEvent.shouldCommit()) {
+            pulseEvent.interval = interval;
+            pulseEvent.ticks = ran;
+            pulseEvent.logicTime = logicNanos;
+            pulseEvent.nodes = nodeCount;
+            pulseEvent.meshBody = meshMode;
+            pulseEvent.commit();
+        }
     }
     
-    private void checkCollisions() {
-        Box head = snake.get(0);
-        double halfSize = BOARD_SIZE/2;
-        double headPosX = head.getTranslateX();
-        double headPosZ = head.getTranslateZ();
-        
-        if (Math.abs(headPosX) >= halfSize - CELL_SIZE/2 ||
-            Math.abs(headPosZ) >= halfSize - CELL_SIZE/2) {
-            gameOver();
+    private void refreshPerfText() {
+        // Walking the scene graph is O(nodes), so only on a HUD refresh
+        nodeCount = countNodes(root);
+        if (!perfVisible || perfText == null) {
             return;
         }
-        
-        if (head.getBoundsInParent().intersects(food.getBoundsInParent())) {
-            score++;
-            scoreText.setText("Score: " + score);
-            growSnake();
-            spawnFood();
+        int segments = model == null ? 0 : model.length();
+        String mode = arenaMode
+                ? String.format("Arena, %d threads, plan %.2f ms, merge %.2f ms, %d cubes",
+                        arena.getThreads(), arena.getPlanNanos() / 1e6, arena.getMergeNanos() / 1e6, arenaMesh.getCubes())
+                : String.format("%s body, %d segments", meshMode ? "Mesh" : "Node", segments);
+        perfText.setText(String.format(
+                "%s, %d Hz logic%s%n"
+                        + "pulse %6.2f ms  p50 %6.2f  p99 %6.2f  max %6.2f%n"
+                        + "tick  %6.3f ms  p50 %6.3f  p99 %6.3f  max %6.3f%n"
+                        + "nodes %d   F3 hide, E export",
+                mode, clock.getRate(), clock.isPaused() ? " (paused, P resumes)" : "",
+                last(pulseTimes) / 1e6, pulseTimes.percentile(0.5) / 1e6, pulseTimes.percentile(0.99) / 1e6, pulseTimes.getMax() / 1e6,
+                last(tickTimes) / 1e6, tickTimes.percentile(0.5) / 1e6, tickTimes.percentile(0.99) / 1e6, tickTimes.getMax() / 1e6,
+                nodeCount));
+    }
+    
+    private static long last(RollingHistogram histogram) {
+        return histogram.size() == 0 ? 0 : histogram.get(histogram.size() - 1);
+    }
+    
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+    
+    private void resetPerf() {
+        pulseTimes.clear();
+        tickTimes.clear();
+        lastPulse = 0;
+    }
+    
+    // Writes the HUD's sample windows to snake-perf-<millis>.csv in the working directory
+    private void exportPerf() {
+        Path file = Path.of("snake-perf-" + System.currentTimeMillis() + ".csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("series,sample,nanos");
+            for (int i = 0; i < pulseTimes.size(); i++) {
+                out.println("pulse," + i + "," + pulseTimes.get(i));
+            }
+            for (int i = 0; i < tickTimes.size(); i++) {
+                out.println("tick," + i + "," + tickTimes.get(i));
+            }
+            System.out.println("Exported performance samples to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Could not export performance samples: " + e.getMessage());
         }
     }
     
-    private void growSnake() {
-        Box last = snake.get(snake.size() - 1);
-        Box newSegment = new Box(CELL_SIZE, CELL_SIZE, CELL_SIZE);
-        newSegment.setMaterial(new javafx.scene.paint.PhongMaterial(Color.GREEN));
-        newSegment.setTranslateX(last.getTranslateX());
-        newSegment.setTranslateY(last.getTranslateY());
-        newSegment.setTranslateZ(last.getTranslateZ());
-        snake.add(newSegment);
-        gameGroup.getChildren().add(newSegment);
+    private Box obtainSegment() {
+        Box segment = segmentPool.poll();
+        return segment != null ? segment : new Box(CELL_SIZE, CELL_SIZE, CELL_SIZE);
     }
     
     private void gameOver() {
         gameRunning = false;
-        gameLoop.stop();
+        clock.pause();
         
-        gameOverText = new Text("GAME OVER\nScore: " + score + "\nPress R to restart");
+        gameOverText = new Text("GAME OVER\nScore: " + model.getScore() + "\nPress R to restart");
         gameOverText.setFont(Font.font("Arial", FontWeight.BOLD, 30));
         gameOverText.setFill(Color.PURPLE);
         gameOverText.setTranslateX(WIDTH/2 - 100);
@@ -349,7 +817,14 @@ public class Snake3D extends Application {
         root.getChildren().add(gameOverText);
     }
 
+    @Override
+    public void stop() {
+        if (arena != null) {
+            arena.close();
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,600 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Hundreds of AI snakes sharing one board, with no JavaFX in sight. Every
+ * cell of the board is a bucket of a uniform spatial hash holding the snake
+ * that has a segment there, so a head checks what it runs into with one array
+ * read instead of against every other snake.
+ *
+ * <p>A tick has two steps. The plan step picks each snake's next cell from the
+ * board as it stood after the last tick; it only reads shared state, so the
+ * board is cut into stripes of rows and worker threads plan the snakes whose
+ * heads are in each stripe. The merge step then applies all the moves on the
+ * calling thread in snake order: tails leave first, two heads into one cell
+ * both die, a head into any other occupied cell dies, dead snakes drop food
+ * and come back later. Planning depends only on the last board, the seed, the
+ * tick and the snake, so the same seed plays the same game on any number of
+ * threads.
+ */
+public class SnakeArena implements AutoCloseable {
+    public static final int FREE = -1;
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DZ = {0, 1, 0, -1};
+    private static final int SPAWN_LENGTH = 4;
+    // Ring capacity per snake; a power of two. A snake this long stops growing.
+    private static final int MAX_LENGTH = 64;
+    private static final int RESPAWN_DELAY = 20;
+    // Foods a snake looks at when it picks a new one to head for
+    private static final int TARGET_SAMPLES = 6;
+    // Stripes per worker, so one crowded stripe does not hold up the tick
+    private static final int STRIPES_PER_THREAD = 4;
+
+    private final int cols;
+    private final int rows;
+    private final int cells;
+    private final int snakes;
+    private final int threads;
+    private final long seed;
+    private SplittableRandom random;
+
+    // The spatial hash: the snake with a segment in each cell, or FREE
+    private final int[] owner;
+    // Food cells, packed, and each cell's place among them or -1
+    private final int[] foodCells;
+    private final int[] foodIndex;
+    private int foodCount;
+    private final int minFood;
+
+    // Per snake. Bodies are rings of MAX_LENGTH cells, one after another.
+    private final int[] bodies;
+    private final int[] headSlot;
+    private final int[] length;
+    private final int[] direction;
+    private final boolean[] alive;
+    private final long[] respawnAt;
+    private final int[] target;
+    private final int[] score;
+    private int aliveCount;
+
+    // Written by the plan step, one slot per snake
+    private final int[] next;
+    private final int[] nextDirection;
+
+    // Merge scratch, stamped with the tick instead of cleared
+    private final long[] vacatedAt;
+    private final long[] claimedAt;
+    private final int[] claimer;
+    private final long[] crashedAt;
+    private final boolean[] grows;
+
+    // Snakes grouped by the stripe their head is in
+    private final int stripes;
+    private final int stripeRows;
+    private final int[] stripeStart;
+    private final int[] stripeOrder;
+    private final int[] stripeCursor;
+    private final ExecutorService workers;
+    private final List<Callable<Void>> stripeTasks = new ArrayList<>();
+
+    private long tick;
+    private long planNanos;
+    private long mergeNanos;
+
+    public SnakeArena(int cols, int rows, int snakes, int threads, long seed) {
+        if (cols < 16 || rows < 16 || (long) cols * rows > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Bad board size: " + cols + "x" + rows);
+        }
+        if (snakes < 1 || (long) snakes * SPAWN_LENGTH * 8 > (long) cols * rows) {
+            throw new IllegalArgumentException(snakes + " snakes do not fit on " + cols + "x" + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = cols * rows;
+        this.snakes = snakes;
+        this.threads = Math.max(1, threads);
+        this.seed = seed;
+        this.owner = new int[cells];
+        this.foodCells = new int[cells];
+        this.foodIndex = new int[cells];
+        this.minFood = snakes;
+        this.bodies = new int[snakes * MAX_LENGTH];
+        this.headSlot = new int[snakes];
+        this.length = new int[snakes];
+        this.direction = new int[snakes];
+        this.alive = new boolean[snakes];
+        this.respawnAt = new long[snakes];
+        this.target = new int[snakes];
+        this.score = new int[snakes];
+        this.next = new int[snakes];
+        this.nextDirection = new int[snakes];
+        this.vacatedAt = new long[cells];
+        this.claimedAt = new long[cells];
+        this.claimer = new int[cells];
+        this.crashedAt = new long[snakes];
+        this.grows = new boolean[snakes];
+
+        this.stripes = this.threads == 1 ? 1 : Math.min(rows, this.threads * STRIPES_PER_THREAD);
+        this.stripeRows = (rows + stripes - 1) / stripes;
+        this.stripeStart = new int[stripes + 1];
+        this.stripeOrder = new int[snakes];
+        this.stripeCursor = new int[stripes];
+        for (int s = 0; s < stripes; s++) {
+            int stripe = s;
+            stripeTasks.add(() -> {
+                planStripe(stripe);
+                return null;
+            });
+        }
+        this.workers = this.threads == 1 ? null : Executors.newFixedThreadPool(this.threads, task -> {
+            Thread worker = new Thread(task, "snake-arena-stripe");
+            worker.setDaemon(true);
+            return worker;
+        });
+        reset();
+    }
+
+    /** Starts again from the seed: every snake spawned, food spread, tick 0. */
+    public void reset() {
+        random = new SplittableRandom(seed);
+        tick = 0;
+        Arrays.fill(owner, FREE);
+        Arrays.fill(foodIndex, -1);
+        Arrays.fill(vacatedAt, -1);
+        Arrays.fill(claimedAt, -1);
+        Arrays.fill(crashedAt, -1);
+        foodCount = 0;
+        aliveCount = 0;
+        for (int i = 0; i < snakes; i++) {
+            alive[i] = false;
+            length[i] = 0;
+            score[i] = 0;
+            respawnAt[i] = 0;
+            spawn(i);
+        }
+        while (foodCount < minFood && spawnFood()) {
+            // Keep going until there is enough food or no room for more
+        }
+    }
+
+    /**
+     * Clears the board and lays snake i along bodies[i], head first, moving in
+     * directions[i] (0 is +x, 1 is +z, 2 is -x, 3 is -z), instead of where the
+     * seed put it, e.g. in a test. A snake with an empty body waits to respawn.
+     * The food is cleared too; the next tick tops it up.
+     */
+    public void arrange(int[][] bodies, int[] directions) {
+        if (bodies.length != snakes || directions.length != snakes) {
+            throw new IllegalArgumentException("Need a body and a direction for each of " + snakes + " snakes");
+        }
+        Arrays.fill(owner, FREE);
+        Arrays.fill(foodIndex, -1);
+        foodCount = 0;
+        aliveCount = 0;
+        for (int i = 0; i < snakes; i++) {
+            int[] body = bodies[i];
+            if (body.length > MAX_LENGTH) {
+                throw new IllegalArgumentException("Snake " + i + " is longer than " + MAX_LENGTH);
+            }
+            alive[i] = body.length > 0;
+            length[i] = body.length;
+            respawnAt[i] = tick + RESPAWN_DELAY;
+            if (!alive[i]) {
+                continue;
+            }
+            for (int k = 0; k < body.length; k++) {
+                int cell = body[k];
+                if (cell < 0 || cell >= cells || owner[cell] != FREE) {
+                    throw new IllegalArgumentException("Cell " + cell + " of snake " + i + " is off the board or taken");
+                }
+                owner[cell] = i;
+                this.bodies[i * MAX_LENGTH + body.length - 1 - k] = cell;
+            }
+            headSlot[i] = body.length - 1;
+            direction[i] = directions[i] & 3;
+            target[i] = -1;
+            aliveCount++;
+        }
+    }
+
+    /** Advances every snake one cell. */
+    public void tick() {
+        long start = System.nanoTime();
+        tick++;
+        groupByStripe();
+        if (workers == null) {
+            for (int s = 0; s < stripes; s++) {
+                planStripe(s);
+            }
+        } else {
+            try {
+                for (Future<Void> stripe : workers.invokeAll(stripeTasks)) {
+                    stripe.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while planning tick " + tick, e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Planning failed on tick " + tick, e.getCause());
+            }
+        }
+        long planned = System.nanoTime();
+        merge();
+        planNanos = planned - start;
+        mergeNanos = System.nanoTime() - planned;
+    }
+
+    // Counting sort of the live snakes by the stripe their head is in,
+    // keeping snake order within each stripe
+    private void groupByStripe() {
+        Arrays.fill(stripeStart, 0);
+        for (int i = 0; i < snakes; i++) {
+            if (alive[i]) {
+                stripeStart[stripeOf(i) + 1]++;
+            }
+        }
+        for (int s = 0; s < stripes; s++) {
+            stripeStart[s + 1] += stripeStart[s];
+        }
+        System.arraycopy(stripeStart, 0, stripeCursor, 0, stripes);
+        for (int i = 0; i < snakes; i++) {
+            if (alive[i]) {
+                stripeOrder[stripeCursor[stripeOf(i)]++] = i;
+            }
+        }
+    }
+
+    private int stripeOf(int snake) {
+        return headCell(snake) / cols / stripeRows;
+    }
+
+    private void planStripe(int stripe) {
+        for (int j = stripeStart[stripe]; j < stripeStart[stripe + 1]; j++) {
+            plan(stripeOrder[j]);
+        }
+    }
+
+    // Picks the snake's next cell: among the free cells ahead and to either
+    // side, the one with the most room around it, then the one nearest its
+    // food. Reads the board and writes only this snake's slots.
+    private void plan(int snake) {
+        int head = headCell(snake);
+        int col = head % cols;
+        int row = head / cols;
+        int goal = target[snake];
+        if (goal < 0 || foodIndex[goal] < 0) {
+            goal = pickTarget(snake, col, row);
+            target[snake] = goal;
+        }
+        int back = (direction[snake] + 2) & 3;
+        int best = direction[snake];
+        int bestScore = Integer.MIN_VALUE;
+        for (int d = 0; d < 4; d++) {
+            if (d == back) {
+                continue;
+            }
+            int c = col + DX[d];
+            int r = row + DZ[d];
+            if (c < 0 || c >= cols || r < 0 || r >= rows) {
+                continue;
+            }
+            int cell = r * cols + c;
+            // A tail about to move on still counts as in the way: cautious, never wrong
+            if (owner[cell] != FREE) {
+                continue;
+            }
+            int score = freeAround(c, r) * 8;
+            if (goal >= 0) {
+                score -= Math.abs(goal % cols - c) + Math.abs(goal / cols - r);
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = d;
+            }
+        }
+        // Boxed in, it carries straight on and dies in the merge
+        nextDirection[snake] = best;
+        int c = col + DX[best];
+        int r = row + DZ[best];
+        next[snake] = c < 0 || c >= cols || r < 0 || r >= rows ? -1 : r * cols + c;
+    }
+
+    private int freeAround(int col, int row) {
+        int free = 0;
+        for (int d = 0; d < 4; d++) {
+            int c = col + DX[d];
+            int r = row + DZ[d];
+            if (c >= 0 && c < cols && r >= 0 && r < rows && owner[r * cols + c] == FREE) {
+                free++;
+            }
+        }
+        return free;
+    }
+
+    // The nearest of a few foods drawn by hashing seed, tick and snake, so the
+    // choice is the same on whichever thread makes it
+    private int pickTarget(int snake, int col, int row) {
+        if (foodCount == 0) {
+            return -1;
+        }
+        long h = seed ^ (tick * 0x9E3779B97F4A7C15L) ^ (snake * 0xC2B2AE3D27D4EB4FL);
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int k = 0; k < TARGET_SAMPLES; k++) {
+            h = mix(h + k);
+            int food = foodCells[(int) ((h >>> 1) % foodCount)];
+            int distance = Math.abs(food % cols - col) + Math.abs(food / cols - row);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = food;
+            }
+        }
+        return best;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Applies the planned moves in snake order
+    private void merge() {
+        // Tails that leave this tick: every snake's but those about to grow
+        for (int i = 0; i < snakes; i++) {
+            if (!alive[i]) {
+                continue;
+            }
+            int to = next[i];
+            grows[i] = to >= 0 && foodIndex[to] >= 0 && length[i] < MAX_LENGTH;
+            if (!grows[i]) {
+                vacatedAt[segment(i, length[i] - 1)] = tick;
+            }
+        }
+        // Two heads for one cell: both crash
+        for (int i = 0; i < snakes; i++) {
+            int to = next[i];
+            if (!alive[i] || to < 0) {
+                continue;
+            }
+            if (claimedAt[to] == tick) {
+                crashedAt[i] = tick;
+                crashedAt[claimer[to]] = tick;
+            } else {
+                claimedAt[to] = tick;
+                claimer[to] = i;
+            }
+        }
+        for (int i = 0; i < snakes; i++) {
+            if (!alive[i]) {
+                continue;
+            }
+            int to = next[i];
+            if (to < 0 || (owner[to] != FREE && vacatedAt[to] != tick)) {
+                crashedAt[i] = tick;
+            }
+        }
+        // Survivors' tails leave before any head arrives
+        for (int i = 0; i < snakes; i++) {
+            if (alive[i] && crashedAt[i] != tick && !grows[i]) {
+                int tail = segment(i, length[i] - 1);
+                if (owner[tail] == i) {
+                    owner[tail] = FREE;
+                }
+                length[i]--;
+            }
+        }
+        for (int i = 0; i < snakes; i++) {
+            if (!alive[i] || crashedAt[i] == tick) {
+                continue;
+            }
+            int to = next[i];
+            headSlot[i] = (headSlot[i] + 1) & (MAX_LENGTH - 1);
+            bodies[i * MAX_LENGTH + headSlot[i]] = to;
+            length[i]++;
+            owner[to] = i;
+            direction[i] = nextDirection[i];
+            if (foodIndex[to] >= 0) {
+                removeFood(to);
+                score[i]++;
+            }
+        }
+        for (int i = 0; i < snakes; i++) {
+            if (alive[i] && crashedAt[i] == tick) {
+                kill(i);
+            }
+        }
+        for (int i = 0; i < snakes; i++) {
+            if (!alive[i] && respawnAt[i] <= tick) {
+                spawn(i);
+            }
+        }
+        while (foodCount < minFood && spawnFood()) {
+            // Top up what was eaten
+        }
+    }
+
+    // Takes the snake off the board, leaving food on every other segment
+    private void kill(int snake) {
+        for (int k = 0; k < length[snake]; k++) {
+            int cell = segment(snake, k);
+            if (owner[cell] != snake) {
+                // Another snake's head took this cell as the tail left it
+                continue;
+            }
+            owner[cell] = FREE;
+            if (k % 2 == 1 && foodIndex[cell] < 0 && foodCount < minFood * 2) {
+                addFood(cell);
+            }
+        }
+        alive[snake] = false;
+        length[snake] = 0;
+        respawnAt[snake] = tick + RESPAWN_DELAY;
+        aliveCount--;
+    }
+
+    // Lays a new snake in a straight run of free cells somewhere on the board.
+    // A crowded board may have no room this tick; it is tried again next tick.
+    private void spawn(int snake) {
+        for (int attempt = 0; attempt < 32; attempt++) {
+            int col = random.nextInt(cols);
+            int row = random.nextInt(rows);
+            int d = random.nextInt(4);
+            // The head is at (col, row); the body trails away behind it
+            int tailCol = col - DX[d] * (SPAWN_LENGTH - 1);
+            int tailRow = row - DZ[d] * (SPAWN_LENGTH - 1);
+            if (tailCol < 0 || tailCol >= cols || tailRow < 0 || tailRow >= rows) {
+                continue;
+            }
+            boolean free = true;
+            for (int k = 0; k < SPAWN_LENGTH && free; k++) {
+                int cell = (row - DZ[d] * k) * cols + col - DX[d] * k;
+                free = owner[cell] == FREE && foodIndex[cell] < 0;
+            }
+            if (!free) {
+                continue;
+            }
+            for (int k = 0; k < SPAWN_LENGTH; k++) {
+                int cell = (tailRow + DZ[d] * k) * cols + tailCol + DX[d] * k;
+                bodies[snake * MAX_LENGTH + k] = cell;
+                owner[cell] = snake;
+            }
+            headSlot[snake] = SPAWN_LENGTH - 1;
+            length[snake] = SPAWN_LENGTH;
+            direction[snake] = d;
+            target[snake] = -1;
+            alive[snake] = true;
+            aliveCount++;
+            return;
+        }
+        respawnAt[snake] = tick + 1;
+    }
+
+    private boolean spawnFood() {
+        for (int attempt = 0; attempt < 32; attempt++) {
+            int cell = random.nextInt(cells);
+            if (owner[cell] == FREE && foodIndex[cell] < 0) {
+                addFood(cell);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addFood(int cell) {
+        foodIndex[cell] = foodCount;
+        foodCells[foodCount++] = cell;
+    }
+
+    // Swap-remove from the packed list
+    private void removeFood(int cell) {
+        int index = foodIndex[cell];
+        int last = foodCells[--foodCount];
+        foodCells[index] = last;
+        foodIndex[last] = index;
+        foodIndex[cell] = -1;
+    }
+
+    /** Cell of the k-th segment of a snake, counting from the head. */
+    public int segment(int snake, int k) {
+        return bodies[snake * MAX_LENGTH + ((headSlot[snake] - k) & (MAX_LENGTH - 1))];
+    }
+
+    public int headCell(int snake) {
+        return bodies[snake * MAX_LENGTH + headSlot[snake]];
+    }
+
+    /** The snake with a segment in the cell, or {@link #FREE}. */
+    public int owner(int cell) {
+        return owner[cell];
+    }
+
+    public boolean isFood(int cell) {
+        return foodIndex[cell] >= 0;
+    }
+
+    public boolean isAlive(int snake) {
+        return alive[snake];
+    }
+
+    public int length(int snake) {
+        return length[snake];
+    }
+
+    public int getScore(int snake) {
+        return score[snake];
+    }
+
+    /**
+     * A hash of the whole board and every snake, for checking that runs with
+     * the same seed and different thread counts stay in step.
+     */
+    public long checksum() {
+        long h = tick;
+        for (int cell = 0; cell < cells; cell++) {
+            h = h * 31 + owner[cell];
+            h = h * 31 + foodIndex[cell];
+        }
+        for (int i = 0; i < snakes; i++) {
+            h = h * 31 + (alive[i] ? headCell(i) : -1);
+            h = h * 31 + length[i];
+            h = h * 31 + score[i];
+        }
+        return h;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSnakeCount() {
+        return snakes;
+    }
+
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    public int getFoodCount() {
+        return foodCount;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    /** Time the last tick spent in the plan step, in nanoseconds. */
+    public long getPlanNanos() {
+        return planNanos;
+    }
+
+    /** Time the last tick spent in the merge step, in nanoseconds. */
+    public long getMergeNanos() {
+        return mergeNanos;
+    }
+
+    /** Stops the worker threads. */
+    @Override
+    public void close() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.example;
+
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import java.util.Arrays;
+
+/**
+ * The part of a {@link SnakeArena} inside a square window, as one
+ * {@link TriangleMesh}: a cube per snake segment or food in view. The window
+ * is read cell by cell from the arena's spatial hash, so the work depends on
+ * the window and not on how many snakes are on the board, and snakes out of
+ * view never reach the scene. Colours come from a small palette texture, one
+ * texture coordinate per colour, so every snake shares one material.
+ */
+public class SnakeArenaMesh {
+    private static final int FLOATS_PER_CUBE = 8 * 3;
+    private static final int INTS_PER_CUBE = 12 * 6;
+    // Two triangles per side, as corner indices: bit 0 is +x, bit 1 +y, bit 2 +z
+    private static final int[] CUBE_TRIANGLES = {
+        0, 2, 6, 0, 6, 4,
+        1, 5, 7, 1, 7, 3,
+        0, 4, 5, 0, 5, 1,
+        2, 3, 7, 2, 7, 6,
+        0, 1, 3, 0, 3, 2,
+        4, 6, 7, 4, 7, 5
+    };
+    // Palette columns: one per snake colour, then food. Bodies on row 0, heads on row 1.
+    private static final Color[] SNAKE_COLORS = {
+        Color.GREEN, Color.ROYALBLUE, Color.ORANGE, Color.MEDIUMPURPLE,
+        Color.GOLD, Color.TEAL, Color.HOTPINK, Color.SADDLEBROWN
+    };
+    private static final int FOOD_COLUMN = SNAKE_COLORS.length;
+    private static final int PALETTE_COLUMNS = SNAKE_COLORS.length + 1;
+
+    private final TriangleMesh mesh = new TriangleMesh();
+    private final MeshView view = new MeshView(mesh);
+    private final float half;
+    private final float foodHalf;
+    private float[] points = new float[0];
+    private int[] faces = new int[0];
+    // Snakes already counted in this update, by stamp
+    private int[] seen = new int[0];
+    private int seenStamp;
+    private int cubes;
+    private int visibleSnakes;
+
+    public SnakeArenaMesh(double cellSize) {
+        half = (float) cellSize / 2;
+        foodHalf = half * 0.6f;
+        WritableImage palette = new WritableImage(PALETTE_COLUMNS, 2);
+        PixelWriter pixels = palette.getPixelWriter();
+        for (int column = 0; column < PALETTE_COLUMNS; column++) {
+            Color color = column == FOOD_COLUMN ? Color.CRIMSON : SNAKE_COLORS[column];
+            pixels.setColor(column, 0, color);
+            pixels.setColor(column, 1, column == FOOD_COLUMN ? color : color.brighter().brighter());
+        }
+        // Sample each palette pixel in its middle
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < PALETTE_COLUMNS; column++) {
+                mesh.getTexCoords().addAll((column + 0.5f) / PALETTE_COLUMNS, (row + 0.5f) / 2);
+            }
+        }
+        PhongMaterial material = new PhongMaterial();
+        material.setDiffuseMap(palette);
+        view.setMaterial(material);
+        // Cubes are closed, so winding does not matter; skip the culling test
+        view.setCullFace(CullFace.NONE);
+    }
+
+    public MeshView getView() {
+        return view;
+    }
+
+    /**
+     * Rebuilds the mesh from the span x span cells whose top left is
+     * (left, top). Cell (left, top) is drawn at x = -span / 2 * cellSize,
+     * z = -span / 2 * cellSize, matching the board's layout, at height y.
+     */
+    public void update(SnakeArena arena, int left, int top, int span, double cellSize, double y) {
+        if (seen.length < arena.getSnakeCount()) {
+            seen = new int[arena.getSnakeCount()];
+        }
+        if (++seenStamp == 0) {
+            Arrays.fill(seen, 0);
+            seenStamp = 1;
+        }
+        int cols = arena.getCols();
+        int right = Math.min(cols, left + span);
+        int bottom = Math.min(arena.getRows(), top + span);
+        cubes = 0;
+        visibleSnakes = 0;
+        for (int row = Math.max(0, top); row < bottom; row++) {
+            for (int col = Math.max(0, left); col < right; col++) {
+                int cell = row * cols + col;
+                int snake = arena.owner(cell);
+                int texture;
+                float size;
+                if (snake != SnakeArena.FREE) {
+                    boolean head = arena.headCell(snake) == cell;
+                    texture = (head ? PALETTE_COLUMNS : 0) + snake % SNAKE_COLORS.length;
+                    size = half;
+                    if (seen[snake] != seenStamp) {
+                        seen[snake] = seenStamp;
+                        visibleSnakes++;
+                    }
+                } else if (arena.isFood(cell)) {
+                    texture = FOOD_COLUMN;
+                    size = foodHalf;
+                } else {
+                    continue;
+                }
+                addCube((float) ((col - left - span / 2) * cellSize), (float) y,
+                        (float) ((row - top - span / 2) * cellSize), size, texture);
+            }
+        }
+        mesh.getPoints().setAll(points, 0, cubes * FLOATS_PER_CUBE);
+        mesh.getFaces().setAll(faces, 0, cubes * INTS_PER_CUBE);
+    }
+
+    private void addCube(float cx, float cy, float cz, float size, int texture) {
+        if ((cubes + 1) * FLOATS_PER_CUBE > points.length) {
+            int capacity = Math.max(256, cubes * 2);
+            points = Arrays.copyOf(points, capacity * FLOATS_PER_CUBE);
+            faces = Arrays.copyOf(faces, capacity * INTS_PER_CUBE);
+        }
+        int p = cubes * FLOATS_PER_CUBE;
+        for (int corner = 0; corner < 8; corner++) {
+            points[p + corner * 3] = cx + ((corner & 1) != 0 ? size : -size);
+            points[p + corner * 3 + 1] = cy + ((corner & 2) != 0 ? size : -size);
+            points[p + corner * 3 + 2] = cz + ((corner & 4) != 0 ? size : -size);
+        }
+        int f = cubes * INTS_PER_CUBE;
+        for (int i = 0; i < CUBE_TRIANGLES.length; i++) {
+            faces[f + i * 2] = cubes * 8 + CUBE_TRIANGLES[i];
+            faces[f + i * 2 + 1] = texture;
+        }
+        cubes++;
+    }
+
+    /** Cubes in the mesh after the last update. */
+    public int getCubes() {
+        return cubes;
+    }
+
+    /** Snakes with at least one segment in the window at the last update. */
+    public int getVisibleSnakes() {
+        return visibleSnakes;
+    }
+}
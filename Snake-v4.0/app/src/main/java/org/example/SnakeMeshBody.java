@@ -0,0 +1,151 @@
+package org.example;
+
+import javafx.scene.paint.Material;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * The whole snake body as one {@link TriangleMesh}: every segment is a cube
+ * of eight vertices in its own slot of the points array. Slots are used as a
+ * ring, tail to head, so a move writes the new front cube and collapses the
+ * old tail cube to a point, touching 48 floats whatever the length. Faces for
+ * every slot are laid down once; a collapsed cube's triangles have no area and
+ * draw nothing.
+ */
+public class SnakeMeshBody {
+    private static final int FLOATS_PER_CUBE = 8 * 3;
+    private static final int INTS_PER_CUBE = 12 * 6;
+    // Two triangles per side, as corner indices: bit 0 is +x, bit 1 +y, bit 2 +z
+    private static final int[] CUBE_TRIANGLES = {
+        0, 2, 6, 0, 6, 4,
+        1, 5, 7, 1, 7, 3,
+        0, 4, 5, 0, 5, 1,
+        2, 3, 7, 2, 7, 6,
+        0, 1, 3, 0, 3, 2,
+        4, 6, 7, 4, 7, 5
+    };
+
+    private final TriangleMesh mesh = new TriangleMesh();
+    private final MeshView view = new MeshView(mesh);
+    private final float half;
+    private final float[] cube = new float[FLOATS_PER_CUBE];
+    private final float[] collapsed = new float[FLOATS_PER_CUBE];
+    // Centre of the cube in each slot
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] z = new float[0];
+    private int capacity;
+    private int tail;
+    private int count;
+
+    public SnakeMeshBody(double cellSize, Material material, int initialCapacity) {
+        half = (float) cellSize / 2;
+        mesh.getTexCoords().addAll(0, 0);
+        view.setMaterial(material);
+        // Cubes are closed, so winding does not matter; skip the culling test
+        view.setCullFace(CullFace.NONE);
+        grow(Math.max(16, initialCapacity));
+    }
+
+    public MeshView getView() {
+        return view;
+    }
+
+    /** Adds a segment in front of the current front segment. */
+    public void pushHead(double cx, double cy, double cz) {
+        if (count == capacity) {
+            grow(capacity * 2);
+        }
+        int slot = (tail + count) % capacity;
+        place(slot, cx, cy, cz);
+        count++;
+    }
+
+    /** Removes the tail segment. */
+    public void popTail() {
+        if (count == 0) {
+            return;
+        }
+        mesh.getPoints().set(tail * FLOATS_PER_CUBE, collapsed, 0, FLOATS_PER_CUBE);
+        tail = (tail + 1) % capacity;
+        count--;
+    }
+
+    /** Moves the tail segment, e.g. part of the way into the next cell. */
+    public void moveTail(double cx, double cy, double cz) {
+        if (count > 0) {
+            place(tail, cx, cy, cz);
+        }
+    }
+
+    public void clear() {
+        mesh.getPoints().setAll(new float[capacity * FLOATS_PER_CUBE]);
+        tail = 0;
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** Centre of the i-th segment counting from the tail. */
+    public double getX(int i) {
+        return x[(tail + i) % capacity];
+    }
+
+    public double getY(int i) {
+        return y[(tail + i) % capacity];
+    }
+
+    public double getZ(int i) {
+        return z[(tail + i) % capacity];
+    }
+
+    private void place(int slot, double cx, double cy, double cz) {
+        x[slot] = (float) cx;
+        y[slot] = (float) cy;
+        z[slot] = (float) cz;
+        for (int corner = 0; corner < 8; corner++) {
+            cube[corner * 3] = x[slot] + ((corner & 1) != 0 ? half : -half);
+            cube[corner * 3 + 1] = y[slot] + ((corner & 2) != 0 ? half : -half);
+            cube[corner * 3 + 2] = z[slot] + ((corner & 4) != 0 ? half : -half);
+        }
+        mesh.getPoints().set(slot * FLOATS_PER_CUBE, cube, 0, FLOATS_PER_CUBE);
+    }
+
+    // Re-lays the ring from slot 0 in a larger mesh. Doubling keeps this rare.
+    private void grow(int newCapacity) {
+        float[] oldX = x;
+        float[] oldY = y;
+        float[] oldZ = z;
+        int oldCapacity = capacity;
+        x = new float[newCapacity];
+        y = new float[newCapacity];
+        z = new float[newCapacity];
+
+        float[] points = new float[newCapacity * FLOATS_PER_CUBE];
+        for (int i = 0; i < count; i++) {
+            int from = (tail + i) % oldCapacity;
+            x[i] = oldX[from];
+            y[i] = oldY[from];
+            z[i] = oldZ[from];
+            for (int corner = 0; corner < 8; corner++) {
+                points[i * FLOATS_PER_CUBE + corner * 3] = x[i] + ((corner & 1) != 0 ? half : -half);
+                points[i * FLOATS_PER_CUBE + corner * 3 + 1] = y[i] + ((corner & 2) != 0 ? half : -half);
+                points[i * FLOATS_PER_CUBE + corner * 3 + 2] = z[i] + ((corner & 4) != 0 ? half : -half);
+            }
+        }
+        int[] faces = new int[newCapacity * INTS_PER_CUBE];
+        for (int slot = 0; slot < newCapacity; slot++) {
+            for (int i = 0; i < CUBE_TRIANGLES.length; i++) {
+                // Point index, then the one shared texture coordinate
+                faces[slot * INTS_PER_CUBE + i * 2] = slot * 8 + CUBE_TRIANGLES[i];
+            }
+        }
+        mesh.getPoints().setAll(points);
+        mesh.getFaces().setAll(faces);
+        capacity = newCapacity;
+        tail = 0;
+    }
+}
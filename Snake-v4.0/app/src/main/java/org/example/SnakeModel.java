@@ -0,0 +1,296 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * The rules of the board game with no JavaFX in sight: a cols x rows grid of
+ * cells packed as {@code row * cols + col}, the body as a ring of cells over
+ * an occupancy bitset, the food, the direction and the score. {@link #tick()}
+ * advances one move and records what changed so a view can follow along
+ * without rereading the whole snake. The walls and the snake's own body are
+ * fatal; the tail cell is vacated before the head moves, unless the snake is
+ * eating.
+ */
+public class SnakeModel {
+    private final int cols;
+    private final int rows;
+    private final int cells;
+    private final int[] body;
+    private final long[] occupied;
+    private final FreeCellSet free;
+    private final RandomGenerator random;
+    private int head;
+    private int length;
+    private int food;
+    private int directionX;
+    private int directionZ;
+    // Direction of the last move, so two quick turns cannot reverse the snake
+    private int movedX;
+    private int movedZ;
+    private int score;
+    private boolean running;
+
+    // What the last tick changed
+    private int previousHead;
+    private int vacated;
+    private boolean ate;
+
+    public SnakeModel(int cols, int rows, RandomGenerator random) {
+        if (cols < 2 || rows < 2 || (long) cols * rows > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Bad board size: " + cols + "x" + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = cols * rows;
+        this.body = new int[cells];
+        this.occupied = new long[(cells + 63) >>> 6];
+        this.free = new FreeCellSet(cells);
+        this.random = random;
+        reset();
+    }
+
+    /** Starts a new game: one segment in the middle, heading along +x. */
+    public void reset() {
+        reset(1);
+    }
+
+    /**
+     * Starts a new game with a snake of the given length, laid along
+     * {@link #cyclePath}: along the top row, back and forth over the other
+     * rows, then up the first column. The head heads on along the path.
+     * Longer snakes are mainly for benchmarks and stress runs.
+     */
+    public void reset(int initialLength) {
+        Arrays.fill(occupied, 0L);
+        free.fill();
+        length = Math.max(1, Math.min(initialLength, cells - 1));
+        if (length == 1) {
+            body[0] = cell(cols / 2, rows / 2);
+            directionX = 1;
+            directionZ = 0;
+        } else {
+            for (int i = 0; i < length; i++) {
+                body[i] = cyclePath(i);
+            }
+            int to = cyclePath(length);
+            directionX = col(to) - col(body[length - 1]);
+            directionZ = row(to) - row(body[length - 1]);
+        }
+        for (int i = 0; i < length; i++) {
+            occupy(body[i]);
+        }
+        head = length - 1;
+        movedX = directionX;
+        movedZ = directionZ;
+        score = 0;
+        running = true;
+        previousHead = body[head];
+        vacated = -1;
+        ate = false;
+        spawnFood();
+    }
+
+    /**
+     * The i-th cell of a walk over the whole board: the top row left to
+     * right, then back and forth over columns 1.. on the remaining rows, then
+     * up column 0. With an even number of rows it is a Hamiltonian cycle, so a
+     * snake that follows it never dies. Wraps around after the last cell.
+     */
+    public int cyclePath(int i) {
+        i %= cells;
+        if (i < cols) {
+            return cell(i, 0);
+        }
+        i -= cols;
+        int inner = cols - 1;
+        if (i < (rows - 1) * inner) {
+            int row = 1 + i / inner;
+            int k = i % inner;
+            return cell(row % 2 == 1 ? cols - 1 - k : 1 + k, row);
+        }
+        i -= (rows - 1) * inner;
+        return cell(0, rows - 1 - i);
+    }
+
+    /** The move that follows {@link #cyclePath} out of the given cell, written to {@code out} as {dx, dz}. */
+    public void cycleDirection(int cell, int[] out) {
+        int col = col(cell);
+        int row = row(cell);
+        int dx = 0;
+        int dz = 0;
+        if (row == 0) {
+            if (col < cols - 1) {
+                dx = 1;
+            } else {
+                dz = 1;
+            }
+        } else if (col == 0) {
+            dz = -1;
+        } else if (row % 2 == 1) {
+            if (col > 1) {
+                dx = -1;
+            } else if (row < rows - 1) {
+                dz = 1;
+            } else {
+                dx = -1;
+            }
+        } else if (col < cols - 1) {
+            dx = 1;
+        } else {
+            dz = 1;
+        }
+        out[0] = dx;
+        out[1] = dz;
+    }
+
+    /** Turns the snake for the next move. A turn straight back is ignored. */
+    public void setDirection(int dx, int dz) {
+        if (length > 1 && dx == -movedX && dz == -movedZ) {
+            return;
+        }
+        directionX = dx;
+        directionZ = dz;
+    }
+
+    /** Advances the snake one cell. Returns whether it is still alive. */
+    public boolean tick() {
+        vacated = -1;
+        ate = false;
+        if (!running) {
+            return false;
+        }
+        int current = body[head];
+        int col = current % cols + directionX;
+        int row = current / cols + directionZ;
+        if (col < 0 || col >= cols || row < 0 || row >= rows) {
+            running = false;
+            return false;
+        }
+        int next = cell(col, row);
+        previousHead = current;
+        movedX = directionX;
+        movedZ = directionZ;
+
+        ate = next == food;
+        if (!ate) {
+            int tailIndex = head - length + 1;
+            vacated = body[tailIndex < 0 ? tailIndex + cells : tailIndex];
+            vacate(vacated);
+            length--;
+        }
+        if (isOccupied(next)) {
+            running = false;
+            return false;
+        }
+        head = head + 1 == cells ? 0 : head + 1;
+        body[head] = next;
+        length++;
+        occupy(next);
+
+        if (ate) {
+            score++;
+            spawnFood();
+        }
+        return running;
+    }
+
+    /** Puts the food on a given free cell instead of a random one, e.g. in a benchmark. */
+    public void setFood(int cell) {
+        if (isOccupied(cell)) {
+            throw new IllegalArgumentException("Cell " + cell + " is occupied");
+        }
+        food = cell;
+    }
+
+    private void spawnFood() {
+        food = free.random(random);
+        if (food < 0) {
+            // The snake fills the whole board
+            running = false;
+        }
+    }
+
+    public boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private void occupy(int cell) {
+        occupied[cell >>> 6] |= 1L << cell;
+        free.remove(cell);
+    }
+
+    private void vacate(int cell) {
+        occupied[cell >>> 6] &= ~(1L << cell);
+        free.add(cell);
+    }
+
+    /** Cell of the i-th segment, counting from the head. */
+    public int segment(int i) {
+        int index = head - i;
+        return body[index < 0 ? index + cells : index];
+    }
+
+    public int cell(int col, int row) {
+        return row * cols + col;
+    }
+
+    public int col(int cell) {
+        return cell % cols;
+    }
+
+    public int row(int cell) {
+        return cell / cols;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int getHead() {
+        return body[head];
+    }
+
+    public int getFood() {
+        return food;
+    }
+
+    public int getDirectionX() {
+        return directionX;
+    }
+
+    public int getDirectionZ() {
+        return directionZ;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Where the head was before the last tick; the neck, if the snake is longer than one. */
+    public int getPreviousHead() {
+        return previousHead;
+    }
+
+    /** The cell the tail left on the last tick, or -1 if the snake grew or did not move. */
+    public int getVacated() {
+        return vacated;
+    }
+
+    /** Whether the last tick ate the food; the food has already moved on. */
+    public boolean ate() {
+        return ate;
+    }
+}
@@ -0,0 +1,34 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** One AnimationTimer pulse; the event's duration is the time spent in the handler. */
+@Name("org.example.SnakePulse")
+@Label("Snake Pulse")
+@Category("Snake")
+@Description("One JavaFX pulse of the game loop")
+public class SnakePulse extends Event {
+    @Label("Interval")
+    @Description("Time since the previous pulse")
+    @Timespan
+    public long interval;
+
+    @Label("Ticks")
+    public int ticks;
+
+    @Label("Logic Time")
+    @Timespan
+    public long logicTime;
+
+    @Label("Scene Nodes")
+    @Description("Node count at the last HUD refresh")
+    public int nodes;
+
+    @Label("Mesh Body")
+    public boolean meshBody;
+}
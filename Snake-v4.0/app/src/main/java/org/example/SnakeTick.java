@@ -0,0 +1,23 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One logic tick of the game model; the event's duration is the tick time. */
+@Name("org.example.SnakeTick")
+@Label("Snake Tick")
+@Category("Snake")
+@Description("One move of the game model")
+public class SnakeTick extends Event {
+    @Label("Length")
+    public int length;
+
+    @Label("Ate")
+    public boolean ate;
+
+    @Label("Alive")
+    public boolean alive;
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures launch to first frame of the jlink image built by
+ * {@code gradle :app:jlinkImage}. Each run starts a fresh JVM from the image
+ * with the startup probe on and times, from outside, how long it takes for
+ * Snake3D to report its first frame. Runs are repeated with class data
+ * sharing off, with the JDK's default archive only, and with the game's
+ * AppCDS archive, and the three are printed side by side.
+ *
+ * <pre>java -m org.example/org.example.StartupBenchmark build/image [runs]</pre>
+ */
+public class StartupBenchmark {
+    private static final String MAIN = "org.example/org.example.Snake3D";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: StartupBenchmark <image dir> [runs]");
+            System.exit(2);
+        }
+        Path image = Path.of(args[0]).toAbsolutePath();
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean windows = System.getProperty("os.name").startsWith("Windows");
+        Path java = image.resolve("bin").resolve(windows ? "java.exe" : "java");
+        Path archive = image.resolve("lib").resolve("snake3d.jsa");
+        if (!Files.isExecutable(java)) {
+            System.err.println("No java launcher in " + image + "; run gradle :app:jlinkImage first");
+            System.exit(1);
+        }
+
+        System.out.printf("%-12s %8s %8s %8s%n", "mode", "min ms", "p50 ms", "max ms");
+        measure("no CDS", java, runs, "-Xshare:off");
+        measure("JDK CDS", java, runs);
+        if (Files.exists(archive)) {
+            measure("AppCDS", java, runs, "-XX:SharedArchiveFile=" + archive);
+        } else {
+            System.out.println("AppCDS       skipped: no " + archive + "; run gradle :app:cdsArchive first");
+        }
+    }
+
+    private static void measure(String mode, Path java, int runs, String... options)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(java.toString());
+        command.addAll(Arrays.asList(options));
+        command.add("-Dsnake.startupProbe=true");
+        command.add("-m");
+        command.add(MAIN);
+
+        // One untimed run first so the image's files are in the page cache
+        launch(command);
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            times[i] = launch(command);
+            if (times[i] < 0) {
+                System.out.println(mode + ": the game exited without drawing a frame");
+                return;
+            }
+        }
+        Arrays.sort(times);
+        System.out.printf("%-12s %8.1f %8.1f %8.1f%n", mode,
+                times[0] / 1e6, times[runs / 2] / 1e6, times[runs - 1] / 1e6);
+    }
+
+    // Nanoseconds from starting the process to reading its first-frame line, or -1
+    private static long launch(List<String> command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        long start = System.nanoTime();
+        Process process = builder.start();
+        long elapsed = -1;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (elapsed < 0 && line.startsWith(Snake3D.FIRST_FRAME_MARKER)) {
+                    elapsed = System.nanoTime() - start;
+                }
+            }
+        }
+        process.waitFor();
+        return elapsed;
+    }
+}
@@ -0,0 +1,97 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SnakeArenaTest {
+    private static final int TICKS = 3000;
+
+    private static long checksumAfter(int threads, int ticks) {
+        try (SnakeArena arena = new SnakeArena(128, 96, 300, threads, 42)) {
+            for (int t = 0; t < ticks; t++) {
+                arena.tick();
+            }
+            return arena.checksum();
+        }
+    }
+
+    @Test
+    void theSameSeedPlaysTheSameGameOnAnyNumberOfThreads() {
+        long oneThread = checksumAfter(1, TICKS);
+        assertEquals(oneThread, checksumAfter(2, TICKS));
+        assertEquals(oneThread, checksumAfter(8, TICKS));
+        // And the game did move on, so the checksums are not trivially equal
+        assertNotEquals(checksumAfter(1, 0), oneThread);
+    }
+
+    @Test
+    void resetStartsTheSameGameAgain() {
+        try (SnakeArena arena = new SnakeArena(64, 64, 50, 2, 7)) {
+            long start = arena.checksum();
+            for (int t = 0; t < 200; t++) {
+                arena.tick();
+            }
+            long after = arena.checksum();
+            arena.reset();
+            assertEquals(start, arena.checksum());
+            for (int t = 0; t < 200; t++) {
+                arena.tick();
+            }
+            assertEquals(after, arena.checksum());
+        }
+    }
+
+    // Snakes 0 and 1 face each other along the top row with one cell between
+    // them, and snake 2 lies along the second row, so neither can turn aside
+    private static SnakeArena headOn(boolean bothHeads, int threads) {
+        SnakeArena arena = new SnakeArena(16, 16, 3, threads, 1);
+        int cols = arena.getCols();
+        int[] wall = new int[16];
+        for (int k = 0; k < wall.length; k++) {
+            wall[k] = cols + 15 - k;
+        }
+        int[][] bodies = {
+            {4, 3, 2, 1},
+            bothHeads ? new int[] {6, 7, 8, 9} : new int[0],
+            wall
+        };
+        arena.arrange(bodies, new int[] {0, 2, 0});
+        return arena;
+    }
+
+    @Test
+    void twoHeadsIntoOneCellBothCrash() {
+        for (int threads : new int[] {1, 4}) {
+            try (SnakeArena arena = headOn(true, threads)) {
+                assertEquals(3, arena.getAliveCount());
+                arena.tick();
+                assertFalse(arena.isAlive(0));
+                assertFalse(arena.isAlive(1));
+                assertTrue(arena.isAlive(2));
+                assertEquals(1, arena.getAliveCount());
+                // Neither took the cell, and both bodies have left the board
+                assertEquals(SnakeArena.FREE, arena.owner(5));
+                for (int cell = 1; cell <= 9; cell++) {
+                    assertEquals(SnakeArena.FREE, arena.owner(cell));
+                }
+            }
+        }
+    }
+
+    @Test
+    void oneHeadIntoTheSameCellMovesOn() {
+        try (SnakeArena arena = headOn(false, 1)) {
+            arena.tick();
+            assertTrue(arena.isAlive(0));
+            assertEquals(5, arena.headCell(0));
+            assertEquals(0, arena.owner(5));
+            // The tail left as the head arrived
+            assertEquals(SnakeArena.FREE, arena.owner(1));
+            assertEquals(4, arena.length(0));
+        }
+    }
+}
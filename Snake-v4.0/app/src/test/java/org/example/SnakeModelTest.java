@@ -0,0 +1,238 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class SnakeModelTest {
+
+    private static SnakeModel model(int cols, int rows) {
+        return new SnakeModel(cols, rows, new Random(1));
+    }
+
+    @Test
+    void startsWithOneSegmentInTheMiddleHeadingPlusX() {
+        SnakeModel model = model(10, 8);
+        assertEquals(model.cell(5, 4), model.getHead());
+        assertEquals(1, model.length());
+        assertEquals(1, model.getDirectionX());
+        assertEquals(0, model.getDirectionZ());
+        assertEquals(0, model.getScore());
+        assertTrue(model.isRunning());
+        assertTrue(model.isOccupied(model.getHead()));
+        assertFalse(model.isOccupied(model.getFood()));
+    }
+
+    @Test
+    void rejectsBoardsTooSmallToPlayOn() {
+        assertThrows(IllegalArgumentException.class, () -> model(1, 10));
+        assertThrows(IllegalArgumentException.class, () -> model(10, 0));
+    }
+
+    @Test
+    void tickMovesTheHeadOneCellAndVacatesTheTail() {
+        SnakeModel model = model(10, 10);
+        model.setFood(model.cell(0, 9));
+        assertTrue(model.tick());
+        assertEquals(model.cell(6, 5), model.getHead());
+        assertEquals(model.cell(5, 5), model.getPreviousHead());
+        assertEquals(model.cell(5, 5), model.getVacated());
+        assertFalse(model.isOccupied(model.cell(5, 5)));
+        assertFalse(model.ate());
+        assertEquals(1, model.length());
+
+        model.setDirection(0, 1);
+        assertTrue(model.tick());
+        assertEquals(model.cell(6, 6), model.getHead());
+    }
+
+    @Test
+    void theWallsAreFatalOnEverySide() {
+        int[][] directions = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+        for (int[] direction : directions) {
+            SnakeModel model = model(6, 6);
+            model.setFood(model.cell(0, 0));
+            model.setDirection(direction[0], direction[1]);
+            int moves = 0;
+            while (model.tick()) {
+                moves++;
+            }
+            int col = model.col(model.getHead());
+            int row = model.row(model.getHead());
+            // Three steps from the middle to the edge, and the next one ends it
+            assertEquals(direction[0] + direction[1] > 0 ? 2 : 3, moves);
+            assertTrue(col == 0 || col == 5 || row == 0 || row == 5);
+            assertFalse(model.isRunning());
+            // A dead snake stays where it died
+            int head = model.getHead();
+            assertFalse(model.tick());
+            assertEquals(head, model.getHead());
+            assertEquals(-1, model.getVacated());
+        }
+    }
+
+    @Test
+    void eatingGrowsTheSnakeAndScores() {
+        SnakeModel model = model(10, 10);
+        model.setFood(model.cell(6, 5));
+        assertTrue(model.tick());
+        assertTrue(model.ate());
+        assertEquals(-1, model.getVacated());
+        assertEquals(2, model.length());
+        assertEquals(1, model.getScore());
+        assertEquals(model.cell(6, 5), model.segment(0));
+        assertEquals(model.cell(5, 5), model.segment(1));
+        // New food goes on a free cell
+        assertFalse(model.isOccupied(model.getFood()));
+
+        model.setFood(model.cell(0, 0));
+        assertTrue(model.tick());
+        assertFalse(model.ate());
+        assertEquals(2, model.length());
+        assertEquals(1, model.getScore());
+        assertEquals(model.cell(5, 5), model.getVacated());
+        assertEquals(model.cell(7, 5), model.segment(0));
+        assertEquals(model.cell(6, 5), model.segment(1));
+    }
+
+    @Test
+    void turningStraightBackIsIgnoredOnceTheSnakeHasABody() {
+        SnakeModel model = model(10, 10);
+        model.setDirection(-1, 0);
+        assertEquals(-1, model.getDirectionX());
+
+        model.setDirection(1, 0);
+        model.setFood(model.cell(6, 5));
+        model.tick();
+        model.setDirection(-1, 0);
+        assertEquals(1, model.getDirectionX());
+        // Two quick turns cannot add up to a reversal either
+        model.setDirection(0, 1);
+        model.setDirection(-1, 0);
+        assertEquals(0, model.getDirectionX());
+        assertEquals(1, model.getDirectionZ());
+        model.setFood(model.cell(0, 0));
+        assertTrue(model.tick());
+        assertEquals(model.cell(6, 6), model.getHead());
+    }
+
+    @Test
+    void runningIntoItsOwnBodyEndsTheGame() {
+        // Along the top row and back along the second: the head is at (2, 1)
+        SnakeModel model = model(4, 4);
+        model.reset(6);
+        assertEquals(model.cell(2, 1), model.getHead());
+        model.setFood(model.cell(3, 3));
+        model.setDirection(0, -1);
+        assertFalse(model.tick());
+        assertFalse(model.isRunning());
+        assertEquals(model.cell(2, 1), model.getHead());
+    }
+
+    @Test
+    void theHeadMayTakeTheCellTheTailIsLeaving() {
+        // Grow to four segments curled round a 2x2 square, head at (5, 6)
+        SnakeModel model = model(10, 10);
+        model.setFood(model.cell(6, 5));
+        model.tick();
+        model.setDirection(0, 1);
+        model.setFood(model.cell(6, 6));
+        model.tick();
+        model.setDirection(-1, 0);
+        model.setFood(model.cell(5, 6));
+        model.tick();
+        assertEquals(4, model.length());
+        assertEquals(model.cell(5, 5), model.segment(3));
+
+        model.setFood(model.cell(0, 0));
+        model.setDirection(0, -1);
+        assertTrue(model.tick());
+        assertEquals(model.cell(5, 5), model.getHead());
+        assertEquals(model.cell(5, 5), model.getVacated());
+        assertTrue(model.isOccupied(model.cell(5, 5)));
+        assertEquals(4, model.length());
+    }
+
+    @Test
+    void setFoodMovesTheFoodToAFreeCellOnly() {
+        SnakeModel model = model(10, 10);
+        model.setFood(model.cell(2, 3));
+        assertEquals(model.cell(2, 3), model.getFood());
+        assertThrows(IllegalArgumentException.class, () -> model.setFood(model.getHead()));
+        assertEquals(model.cell(2, 3), model.getFood());
+    }
+
+    @Test
+    void cycleDirectionLeadsToTheNextCellOfTheCycle() {
+        SnakeModel model = model(6, 4);
+        int[] direction = new int[2];
+        int cells = model.getCols() * model.getRows();
+        boolean[] seen = new boolean[cells];
+        for (int i = 0; i < cells; i++) {
+            int cell = model.cyclePath(i);
+            assertFalse(seen[cell]);
+            seen[cell] = true;
+            model.cycleDirection(cell, direction);
+            int next = model.cell(model.col(cell) + direction[0], model.row(cell) + direction[1]);
+            assertEquals(model.cyclePath(i + 1), next);
+        }
+    }
+
+    @Test
+    void followingTheCycleFillsTheBoard() {
+        SnakeModel model = model(6, 6);
+        int[] direction = new int[2];
+        for (int moves = 0; moves < 100_000 && model.isRunning(); moves++) {
+            model.cycleDirection(model.getHead(), direction);
+            model.setDirection(direction[0], direction[1]);
+            model.tick();
+        }
+        assertFalse(model.isRunning());
+        assertEquals(36, model.length());
+        assertEquals(35, model.getScore());
+    }
+
+    @Test
+    void resetLaysTheSnakeAlongTheCycle() {
+        SnakeModel model = model(8, 6);
+        model.setFood(model.cell(5, 3));
+        model.tick();
+        assertEquals(1, model.getScore());
+
+        model.reset(10);
+        assertEquals(10, model.length());
+        assertEquals(0, model.getScore());
+        assertTrue(model.isRunning());
+        assertEquals(-1, model.getVacated());
+        assertFalse(model.ate());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(model.cyclePath(9 - i), model.segment(i));
+            assertTrue(model.isOccupied(model.segment(i)));
+        }
+        assertFalse(model.isOccupied(model.cyclePath(10)));
+        assertFalse(model.isOccupied(model.getFood()));
+        // Heading on along the path
+        int next = model.cyclePath(10);
+        assertEquals(model.col(next) - model.col(model.getHead()), model.getDirectionX());
+        assertEquals(model.row(next) - model.row(model.getHead()), model.getDirectionZ());
+        assertNotEquals(model.getHead(), model.getFood());
+    }
+
+    @Test
+    void resetClampsTheLengthToTheBoard() {
+        SnakeModel model = model(5, 4);
+        model.reset(0);
+        assertEquals(1, model.length());
+        assertEquals(model.cell(2, 2), model.getHead());
+
+        model.reset(1000);
+        assertEquals(19, model.length());
+        assertTrue(model.isRunning());
+        assertFalse(model.isOccupied(model.getFood()));
+    }
+}
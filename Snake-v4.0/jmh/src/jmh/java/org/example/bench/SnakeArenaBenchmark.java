@@ -0,0 +1,53 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.example.SnakeArena;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * One arena tick: every snake planned on the stripe workers and merged on
+ * the benchmark thread. The board has about 110 cells per snake, the density
+ * of the game's arena. Compare the thread counts against the machine's cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnakeArenaBenchmark {
+    @Param({"600", "5000"})
+    public int snakes;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private SnakeArena arena;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int side = (int) Math.ceil(Math.sqrt(110.0 * snakes));
+        arena = new SnakeArena(side, side, snakes, threads, 42);
+        // Past the opening, when every snake is still short and close to food
+        for (int i = 0; i < 200; i++) {
+            arena.tick();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        arena.close();
+    }
+
+    @Benchmark
+    public int tick() {
+        arena.tick();
+        return arena.getAliveCount();
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.example.SnakeMeshBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The single-mesh body's per-tick and per-frame vertex updates, without
+ * starting the FX toolkit: the TriangleMesh is only a holder of arrays until
+ * a scene shows it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SnakeMeshBenchmark {
+    private static final int CELL_SIZE = 30;
+    // Segments are laid along a row of this many cells, then the next row
+    private static final int ROW = 1000;
+
+    @Param({"10", "1000", "100000"})
+    public int length;
+
+    private SnakeMeshBody mesh;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mesh = new SnakeMeshBody(CELL_SIZE, null, length + 1);
+        for (next = 0; next < length; next++) {
+            push();
+        }
+    }
+
+    private void push() {
+        int cell = next % (ROW * ROW);
+        mesh.pushHead(cell % ROW * CELL_SIZE, CELL_SIZE / 2, cell / ROW * CELL_SIZE);
+    }
+
+    /** A tick's mesh work: the cube in front written, the tail cube collapsed. */
+    @Benchmark
+    public int move() {
+        push();
+        next++;
+        mesh.popTail();
+        return mesh.size();
+    }
+
+    /** A frame's mesh work between ticks: the tail cube moved part of the way on. */
+    @Benchmark
+    public int interpolateTail() {
+        mesh.moveTail(next % ROW * CELL_SIZE + 0.5 * CELL_SIZE, CELL_SIZE / 2, 0);
+        return mesh.size();
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.example.SnakeModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One game step of the headless model at a given snake length. The board is
+ * square with an even side and room for four times the snake, and the snake
+ * follows the model's Hamiltonian cycle so it never dies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SnakeStepBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int length;
+
+    private SnakeModel model;
+    private final int[] direction = new int[2];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int side = Math.max(16, (int) Math.ceil(Math.sqrt(4.0 * length)));
+        side += side % 2;
+        model = new SnakeModel(side, side, new SplittableRandom(42));
+        model.reset(length);
+    }
+
+    /**
+     * A move: steering, the wall and body checks, releasing the tail and
+     * placing the head, plus eating, growth and a food spawn whenever the
+     * randomly placed food comes up.
+     */
+    @Benchmark
+    public boolean step() {
+        model.cycleDirection(model.getHead(), direction);
+        model.setDirection(direction[0], direction[1]);
+        boolean alive = model.tick();
+        if (!alive || model.length() >= 2 * length) {
+            model.reset(length);
+        }
+        return alive;
+    }
+
+    /**
+     * A move onto food every time: the tail stays, the snake grows and new
+     * food is spawned. The snake is cut back to its starting length each time
+     * it doubles, which adds an O(board) reset every {@code length} calls.
+     */
+    @Benchmark
+    public boolean eat() {
+        int head = model.getHead();
+        model.cycleDirection(head, direction);
+        model.setDirection(direction[0], direction[1]);
+        int ahead = model.cell(model.col(head) + direction[0], model.row(head) + direction[1]);
+        if (!model.isOccupied(ahead)) {
+            model.setFood(ahead);
+        }
+        boolean alive = model.tick();
+        if (!alive || model.length() >= 2 * length) {
+            model.reset(length);
+        }
+        return alive;
+    }
+}
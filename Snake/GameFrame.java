@@ -1,8 +1,13 @@
 import javax.swing.JFrame;
+import javax.swing.JPanel;
 
 public class GameFrame extends JFrame {
     public GameFrame() {
-        this.add(new GamePanel());
+        this(new GamePanel());
+    }
+
+    public GameFrame(JPanel panel) {
+        this.add(panel);
         this.setTitle("Snake Game");
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.setResizable(false);
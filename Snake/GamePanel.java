@@ -11,21 +11,28 @@ public class GamePanel extends JPanel implements ActionListener {
     private static final int SCREEN_WIDTH = 600;
     private static final int SCREEN_HEIGHT = 600;
     private static final int UNIT_SIZE = 25;
-    private static final int GAME_UNITS = (SCREEN_WIDTH * SCREEN_HEIGHT) / UNIT_SIZE;
     private static final int DELAY = 75;
-    private final int[] x = new int[GAME_UNITS];
-    private final int[] y = new int[GAME_UNITS];
-    private int bodyParts = 6;
-    private int applesEaten;
-    private int appleX;
-    private int appleY;
-    private char direction = 'R';
-    private boolean running = false;
+    private static final Color HEAD_COLOR = Color.green;
+    private static final Color BODY_COLOR = new Color(45, 180, 0);
+    private static final Color APPLE_COLOR = Color.red;
+    private static final Font SCORE_FONT = new Font("Ink Free", Font.BOLD, 40);
+    private static final Font GAME_OVER_FONT = new Font("Ink Free", Font.BOLD, 75);
+    // -Dsnake.traceTurns=true prints how long each turn waited between key and move
+    private static final boolean TRACE_TURNS = Boolean.getBoolean("snake.traceTurns");
+    private final SnakeBoard board;
+    private final TurnQueue turns = new TurnQueue();
+    private final BoardRenderer renderer;
+    private final FontMetrics scoreMetrics;
+    private final Rectangle scoreBounds = new Rectangle();
+    private String scoreText;
+    private int drawnScore = -1;
+    private int drawnApple = -1;
     private Timer timer;
-    private Random random;
 
     public GamePanel() {
-        random = new Random();
+        board = new SnakeBoard(SCREEN_WIDTH / UNIT_SIZE, SCREEN_HEIGHT / UNIT_SIZE, 6, new Random());
+        renderer = new BoardRenderer(board.getCols(), board.getRows(), UNIT_SIZE, Color.black);
+        scoreMetrics = getFontMetrics(SCORE_FONT);
         this.setPreferredSize(new Dimension(SCREEN_WIDTH, SCREEN_HEIGHT));
         this.setBackground(Color.black);
         this.setFocusable(true);
@@ -34,149 +41,121 @@ public class GamePanel extends JPanel implements ActionListener {
     }
 
     public void startGame() {
-        newApple();
-        running = true;
+        drawBoard();
         timer = new Timer(DELAY, this);
         timer.start();
     }
 
     public void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        draw(g);
-    }
-
-    public void draw(Graphics g) {
-        if (running) {
-            g.setColor(Color.red);
-            g.fillOval(appleX, appleY, UNIT_SIZE, UNIT_SIZE);
-
-            for (int i = 0; i < bodyParts; i++) {
-                if (i == 0) {
-                    g.setColor(Color.green);
-                    g.fillRect(x[i], y[i], UNIT_SIZE, UNIT_SIZE);
-                } else {
-                    g.setColor(new Color(45, 180, 0));
-                    g.fillRect(x[i], y[i], UNIT_SIZE, UNIT_SIZE);
-                }
-            }
-            g.setColor(Color.red);
-            g.setFont(new Font("Ink Free", Font.BOLD, 40));
-            FontMetrics metrics = getFontMetrics(g.getFont());
-            g.drawString("Score: " + applesEaten, (SCREEN_WIDTH - metrics.stringWidth("Score: " + applesEaten)) / 2, g.getFont().getSize());
+        if (board.isRunning()) {
+            draw(g);
         } else {
+            super.paintComponent(g);
             gameOver(g);
         }
     }
 
-    public void newApple() {
-        appleX = random.nextInt((int) (SCREEN_WIDTH / UNIT_SIZE)) * UNIT_SIZE;
-        appleY = random.nextInt((int) (SCREEN_HEIGHT / UNIT_SIZE)) * UNIT_SIZE;
+    public void draw(Graphics g) {
+        renderer.paint(g);
+        g.setColor(Color.red);
+        g.setFont(SCORE_FONT);
+        g.drawString(scoreText, scoreBounds.x, SCORE_FONT.getSize());
     }
 
-    public void move() {
-        for (int i = bodyParts; i > 0; i--) {
-            x[i] = x[i - 1];
-            y[i] = y[i - 1];
-        }
-
-        switch (direction) {
-            case 'U':
-                y[0] = y[0] - UNIT_SIZE;
-                break;
-            case 'D':
-                y[0] = y[0] + UNIT_SIZE;
-                break;
-            case 'L':
-                x[0] = x[0] - UNIT_SIZE;
-                break;
-            case 'R':
-                x[0] = x[0] + UNIT_SIZE;
-                break;
+    // Full redraw of the back buffer, only needed when a game starts
+    private void drawBoard() {
+        renderer.clear();
+        for (int i = board.length() - 1; i >= 0; i--) {
+            renderer.fillCell(board.segment(i), i == 0 ? HEAD_COLOR : BODY_COLOR);
         }
+        drawnApple = board.getApple();
+        renderer.fillOval(drawnApple, APPLE_COLOR);
+        updateScore();
+        repaint();
     }
 
-    public void checkApple() {
-        if ((x[0] == appleX) && (y[0] == appleY)) {
-            bodyParts++;
-            applesEaten++;
-            newApple();
+    // After a tick only the new head, the old head, the cell the tail left and
+    // the apple can have changed
+    private void drawChanges() {
+        int vacated = board.getVacated();
+        if (vacated >= 0) {
+            renderer.clearCell(vacated);
+            repaint(renderer.bounds(vacated));
         }
-    }
-
-    public void checkCollisions() {
-        for (int i = bodyParts; i > 0; i--) {
-            if ((x[0] == x[i]) && (y[0] == y[i])) {
-                running = false;
-            }
+        if (board.length() > 1) {
+            int neck = board.segment(1);
+            renderer.fillCell(neck, BODY_COLOR);
+            repaint(renderer.bounds(neck));
         }
-
-        if (x[0] < 0) {
-            running = false;
-        }
-
-        if (x[0] > SCREEN_WIDTH) {
-            running = false;
-        }
-
-        if (y[0] < 0) {
-            running = false;
-        }
-
-        if (y[0] > SCREEN_HEIGHT) {
-            running = false;
+        int head = board.segment(0);
+        renderer.fillCell(head, HEAD_COLOR);
+        repaint(renderer.bounds(head));
+        if (board.getApple() != drawnApple) {
+            // The old apple cell is the head now and has just been drawn
+            drawnApple = board.getApple();
+            renderer.fillOval(drawnApple, APPLE_COLOR);
+            repaint(renderer.bounds(drawnApple));
         }
+        updateScore();
+    }
 
-        if (!running) {
-            timer.stop();
+    private void updateScore() {
+        if (board.getApplesEaten() == drawnScore) {
+            return;
         }
+        repaint(scoreBounds);
+        drawnScore = board.getApplesEaten();
+        scoreText = "Score: " + drawnScore;
+        int width = scoreMetrics.stringWidth(scoreText);
+        scoreBounds.setBounds((SCREEN_WIDTH - width) / 2, SCORE_FONT.getSize() - scoreMetrics.getAscent(),
+                width, scoreMetrics.getHeight());
+        repaint(scoreBounds);
     }
 
     public void gameOver(Graphics g) {
         g.setColor(Color.red);
-        g.setFont(new Font("Ink Free", Font.BOLD, 75));
+        g.setFont(GAME_OVER_FONT);
         FontMetrics metrics = getFontMetrics(g.getFont());
         g.drawString("Game Over", (SCREEN_WIDTH - metrics.stringWidth("Game Over")) / 2, SCREEN_HEIGHT / 2);
 
         g.setColor(Color.red);
-        g.setFont(new Font("Ink Free", Font.BOLD, 40));
-        FontMetrics metrics1 = getFontMetrics(g.getFont());
-        g.drawString("Score: " + applesEaten, (SCREEN_WIDTH - metrics1.stringWidth("Score: " + applesEaten)) / 2, g.getFont().getSize());
+        g.setFont(SCORE_FONT);
+        g.drawString(scoreText, scoreBounds.x, g.getFont().getSize());
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
-        if (running) {
-            move();
-            checkApple();
-            checkCollisions();
+        if (board.isRunning()) {
+            char turn = turns.poll(board.getDirection(), System.nanoTime());
+            if (turn != 0) {
+                board.setDirection(turn);
+                if (TRACE_TURNS) {
+                    System.out.printf("turn %c: %.1f ms from key to move%n", turn, turns.getLastLatencyNanos() / 1e6);
+                }
+            }
+            board.tick();
+            if (board.isRunning()) {
+                drawChanges();
+            } else {
+                timer.stop();
+                if (TRACE_TURNS) {
+                    System.out.println(turns.summary());
+                }
+                updateScore();
+                repaint();
+            }
         }
-        repaint();
     }
 
     public class MyKeyAdapter extends KeyAdapter {
         @Override
         public void keyPressed(KeyEvent e) {
+            long now = System.nanoTime();
             switch (e.getKeyCode()) {
-                case KeyEvent.VK_LEFT:
-                    if (direction != 'R') {
-                        direction = 'L';
-                    }
-                    break;
-                case KeyEvent.VK_RIGHT:
-                    if (direction != 'L') {
-                        direction = 'R';
-                    }
-                    break;
-                case KeyEvent.VK_UP:
-                    if (direction != 'D') {
-                        direction = 'U';
-                    }
-                    break;
-                case KeyEvent.VK_DOWN:
-                    if (direction != 'U') {
-                        direction = 'D';
-                    }
-                    break;
+                case KeyEvent.VK_LEFT -> turns.offer('L', board.getDirection(), now);
+                case KeyEvent.VK_RIGHT -> turns.offer('R', board.getDirection(), now);
+                case KeyEvent.VK_UP -> turns.offer('U', board.getDirection(), now);
+                case KeyEvent.VK_DOWN -> turns.offer('D', board.getDirection(), now);
             }
         }
     }
@@ -0,0 +1,332 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Snake rules for many players on one board. Every live snake moves once per
+ * tick, and each cell that changes is recorded so a server can send clients
+ * only those changes instead of the whole board. Not thread-safe: one thread
+ * owns the board and runs every tick.
+ */
+public class SharedBoard {
+    /** A head moved onto the cell; any apple there was eaten. */
+    public static final byte SET = 0;
+    /** A tail left the cell, or a dead snake's body was removed. */
+    public static final byte CLEAR = 1;
+    /** An apple appeared on the cell. */
+    public static final byte APPLE = 2;
+
+    private final int cols;
+    private final int rows;
+    private final int initialLength;
+    private final int targetApples;
+    private final RandomGenerator random;
+    private final long[] occupied;
+    private final long[] apples;
+    private final FreeCellSet free;
+    private final int[][] bodies;
+    private final int[] head;
+    private final int[] length;
+    private final int[] pendingGrowth;
+    private final int[] next;
+    private final char[] direction;
+    private final char[] moved;
+    private final boolean[] joined;
+    private final boolean[] alive;
+    private final int[] freeIds;
+    private int freeIdCount;
+    private int appleCount;
+    private int aliveCount;
+
+    // This tick's changes, in the order they happened
+    private byte[] changeKind = new byte[4096];
+    private int[] changeCell = new int[4096];
+    private int[] changeOwner = new int[4096];
+    private int changes;
+
+    public SharedBoard(int cols, int rows, int maxPlayers, int initialLength, RandomGenerator random) {
+        if (cols % 64 != 0) {
+            throw new IllegalArgumentException("Board width must be a multiple of 64: " + cols);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.initialLength = initialLength;
+        this.targetApples = Math.max(16, maxPlayers / 2);
+        this.random = random;
+        int cells = cols * rows;
+        this.occupied = new long[cells >>> 6];
+        this.apples = new long[cells >>> 6];
+        this.free = new FreeCellSet(cells);
+        this.bodies = new int[maxPlayers][];
+        this.head = new int[maxPlayers];
+        this.length = new int[maxPlayers];
+        this.pendingGrowth = new int[maxPlayers];
+        this.next = new int[maxPlayers];
+        this.direction = new char[maxPlayers];
+        this.moved = new char[maxPlayers];
+        this.joined = new boolean[maxPlayers];
+        this.alive = new boolean[maxPlayers];
+        this.freeIds = new int[maxPlayers];
+        for (int i = 0; i < maxPlayers; i++) {
+            freeIds[i] = maxPlayers - 1 - i;
+        }
+        this.freeIdCount = maxPlayers;
+    }
+
+    /** Reserves a player slot, or returns -1 if the board is full. The snake still has to {@link #spawn}. */
+    public int join() {
+        if (freeIdCount == 0) {
+            return -1;
+        }
+        int id = freeIds[--freeIdCount];
+        joined[id] = true;
+        if (bodies[id] == null) {
+            bodies[id] = new int[16];
+        }
+        return id;
+    }
+
+    public void leave(int id) {
+        if (alive[id]) {
+            die(id);
+        }
+        joined[id] = false;
+        freeIds[freeIdCount++] = id;
+    }
+
+    /** Drops a new snake on a random free cell. Returns false if no room was found. */
+    public boolean spawn(int id) {
+        for (int attempt = 0; attempt < 16; attempt++) {
+            int cell = free.random(random);
+            if (cell < 0) {
+                return false;
+            }
+            if (hasApple(cell)) {
+                continue;
+            }
+            // Face whichever way has room, so the first move is not suicide
+            int start = random.nextInt(4);
+            for (int i = 0; i < 4; i++) {
+                char d = "UDLR".charAt((start + i) & 3);
+                int ahead = step(cell, d);
+                if (ahead >= 0 && !isOccupied(ahead)) {
+                    head[id] = 0;
+                    bodies[id][0] = cell;
+                    length[id] = 1;
+                    pendingGrowth[id] = initialLength - 1;
+                    direction[id] = d;
+                    moved[id] = d;
+                    alive[id] = true;
+                    aliveCount++;
+                    occupy(cell);
+                    record(SET, cell, id);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Queues a turn for the next tick. Reversing into the neck is ignored. */
+    public void setDirection(int id, char d) {
+        if (d == 'U' || d == 'D' || d == 'L' || d == 'R') {
+            if (length[id] == 1 || d != SnakePolicy.opposite(moved[id])) {
+                direction[id] = d;
+            }
+        }
+    }
+
+    /** Moves every live snake one cell and tops the apples back up. */
+    public void tick() {
+        int players = bodies.length;
+
+        // Tails go first, so a snake may follow any tail, including its own
+        for (int id = 0; id < players; id++) {
+            if (!alive[id]) {
+                continue;
+            }
+            next[id] = step(segment(id, 0), direction[id]);
+            if (next[id] >= 0 && hasApple(next[id])) {
+                pendingGrowth[id]++;
+            }
+            if (pendingGrowth[id] > 0) {
+                pendingGrowth[id]--;
+            } else {
+                int tail = segment(id, length[id] - 1);
+                vacate(tail);
+                record(CLEAR, tail, id);
+                length[id]--;
+            }
+        }
+
+        // Heads in id order; when two heads meet, the lower id gets there first
+        for (int id = 0; id < players; id++) {
+            if (!alive[id]) {
+                continue;
+            }
+            int cell = next[id];
+            if (cell < 0 || isOccupied(cell)) {
+                die(id);
+                continue;
+            }
+            if (hasApple(cell)) {
+                apples[cell >>> 6] &= ~(1L << cell);
+                appleCount--;
+            }
+            int[] body = bodies[id];
+            if (length[id] == body.length) {
+                body = grow(id);
+            }
+            head[id] = head[id] + 1 == body.length ? 0 : head[id] + 1;
+            body[head[id]] = cell;
+            length[id]++;
+            moved[id] = direction[id];
+            occupy(cell);
+            record(SET, cell, id);
+        }
+
+        for (int attempt = 0; appleCount < targetApples && attempt < 2 * targetApples; attempt++) {
+            int cell = free.random(random);
+            if (cell < 0) {
+                break;
+            }
+            if (!hasApple(cell)) {
+                apples[cell >>> 6] |= 1L << cell;
+                appleCount++;
+                record(APPLE, cell, -1);
+            }
+        }
+    }
+
+    private void die(int id) {
+        for (int i = 0; i < length[id]; i++) {
+            int cell = segment(id, i);
+            vacate(cell);
+            record(CLEAR, cell, id);
+        }
+        length[id] = 0;
+        alive[id] = false;
+        aliveCount--;
+    }
+
+    // The ring only ever holds the snake, so it doubles as the snake grows
+    private int[] grow(int id) {
+        int n = length[id];
+        int[] grown = new int[bodies[id].length * 2];
+        for (int i = 0; i < n; i++) {
+            grown[n - 1 - i] = segment(id, i);
+        }
+        bodies[id] = grown;
+        head[id] = n - 1;
+        return grown;
+    }
+
+    private void record(byte kind, int cell, int owner) {
+        if (changes == changeKind.length) {
+            changeKind = Arrays.copyOf(changeKind, changes * 2);
+            changeCell = Arrays.copyOf(changeCell, changes * 2);
+            changeOwner = Arrays.copyOf(changeOwner, changes * 2);
+        }
+        changeKind[changes] = kind;
+        changeCell[changes] = cell;
+        changeOwner[changes] = owner;
+        changes++;
+    }
+
+    private int step(int cell, char d) {
+        int x = cell % cols;
+        int y = cell / cols;
+        switch (d) {
+            case 'U' -> y--;
+            case 'D' -> y++;
+            case 'L' -> x--;
+            case 'R' -> x++;
+        }
+        return x < 0 || x >= cols || y < 0 || y >= rows ? -1 : y * cols + x;
+    }
+
+    public boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public boolean hasApple(int cell) {
+        return (apples[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private void occupy(int cell) {
+        occupied[cell >>> 6] |= 1L << cell;
+        free.remove(cell);
+    }
+
+    private void vacate(int cell) {
+        occupied[cell >>> 6] &= ~(1L << cell);
+        free.add(cell);
+    }
+
+    /**
+     * Sixteen bits of one board row starting at column {@code x}, which must be
+     * a multiple of 16: bit i is cell {@code (x + i, y)}.
+     */
+    public int occupiedBits(int x, int y) {
+        int cell = y * cols + x;
+        return (int) (occupied[cell >>> 6] >>> (cell & 63)) & 0xFFFF;
+    }
+
+    /** Like {@link #occupiedBits} for apples. */
+    public int appleBits(int x, int y) {
+        int cell = y * cols + x;
+        return (int) (apples[cell >>> 6] >>> (cell & 63)) & 0xFFFF;
+    }
+
+    /** Cell of the i-th segment of a snake, counting from the head. */
+    public int segment(int id, int i) {
+        int[] body = bodies[id];
+        int index = head[id] - i;
+        return body[index < 0 ? index + body.length : index];
+    }
+
+    public int changes() {
+        return changes;
+    }
+
+    public byte changeKind(int i) {
+        return changeKind[i];
+    }
+
+    public int changeCell(int i) {
+        return changeCell[i];
+    }
+
+    /** Snake behind a change, or -1 for apples. */
+    public int changeOwner(int i) {
+        return changeOwner[i];
+    }
+
+    /** Forgets the recorded changes once they have been sent on. Spawns and ticks both add to them. */
+    public void clearChanges() {
+        changes = 0;
+    }
+
+    public boolean isAlive(int id) {
+        return alive[id];
+    }
+
+    public int length(int id) {
+        return length[id];
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    public int getMaxPlayers() {
+        return bodies.length;
+    }
+}
@@ -0,0 +1,184 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Headless Snake rules. The body is a ring buffer of cell indices (head at
+ * {@code body[head]}) backed by an occupancy bitset, so a tick costs the same
+ * no matter how long the snake is.
+ */
+public class SnakeBoard {
+    private final int cols;
+    private final int rows;
+    private final int cells;
+    private final int initialLength;
+    private final int[] body;
+    private final long[] occupied;
+    private final FreeCellSet free;
+    private final RandomGenerator random;
+    private int head;
+    private int length;
+    private int pendingGrowth;
+    private int apple;
+    private int vacated = -1;
+    private int applesEaten;
+    private char direction;
+    private boolean running;
+    private boolean collided;
+
+    public SnakeBoard(int cols, int rows, int initialLength, RandomGenerator random) {
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = cols * rows;
+        this.initialLength = initialLength;
+        this.body = new int[cells];
+        this.occupied = new long[(cells + 63) >>> 6];
+        this.free = new FreeCellSet(cells);
+        this.random = random;
+        reset();
+    }
+
+    public void reset() {
+        Arrays.fill(occupied, 0L);
+        free.fill();
+        // The snake starts coiled up in the top-left cell and unrolls from there
+        head = 0;
+        vacated = -1;
+        body[0] = 0;
+        length = 1;
+        occupy(0);
+        pendingGrowth = initialLength - 1;
+        applesEaten = 0;
+        direction = 'R';
+        collided = false;
+        running = true;
+        newApple();
+    }
+
+    public void newApple() {
+        apple = free.random(random);
+        if (apple < 0) {
+            // Nowhere left to put an apple: the snake fills the board
+            running = false;
+        }
+    }
+
+    public void move() {
+        vacated = -1;
+        int x = cellX(body[head]);
+        int y = cellY(body[head]);
+        switch (direction) {
+            case 'U' -> y--;
+            case 'D' -> y++;
+            case 'L' -> x--;
+            case 'R' -> x++;
+        }
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            collided = true;
+            return;
+        }
+
+        int next = y * cols + x;
+        if (next != apple) {
+            if (pendingGrowth > 0) {
+                pendingGrowth--;
+            } else {
+                // The tail leaves before the head arrives, so chasing the tail is legal
+                vacated = segment(length - 1);
+                vacate(vacated);
+                length--;
+            }
+        }
+        if (isOccupied(next)) {
+            collided = true;
+            return;
+        }
+        head = head + 1 == cells ? 0 : head + 1;
+        body[head] = next;
+        length++;
+        occupy(next);
+    }
+
+    public void checkApple() {
+        if (!collided && body[head] == apple) {
+            applesEaten++;
+            newApple();
+        }
+    }
+
+    public void checkCollisions() {
+        if (collided) {
+            running = false;
+        }
+    }
+
+    public void tick() {
+        move();
+        checkApple();
+        checkCollisions();
+    }
+
+    public boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private void occupy(int cell) {
+        occupied[cell >>> 6] |= 1L << cell;
+        free.remove(cell);
+    }
+
+    private void vacate(int cell) {
+        occupied[cell >>> 6] &= ~(1L << cell);
+        free.add(cell);
+    }
+
+    /** Cell of the i-th segment, counting from the head. */
+    public int segment(int i) {
+        int index = head - i;
+        return body[index < 0 ? index + cells : index];
+    }
+
+    public int cellX(int cell) {
+        return cell % cols;
+    }
+
+    public int cellY(int cell) {
+        return cell / cols;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** Cell the tail left on the last move, or -1 if the snake grew instead. */
+    public int getVacated() {
+        return vacated;
+    }
+
+    public int getApple() {
+        return apple;
+    }
+
+    public int getApplesEaten() {
+        return applesEaten;
+    }
+
+    public char getDirection() {
+        return direction;
+    }
+
+    public void setDirection(char direction) {
+        this.direction = direction;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -1,5 +1,13 @@
 public class SnakeGame {
     public static void main(String[] args) {
+        if (args.length >= 2 && args[0].equals("--world")) {
+            int size = Integer.parseInt(args[1]);
+            if (size < 8 || size > 4096) {
+                throw new IllegalArgumentException("World size must be between 8 and 4096: " + size);
+            }
+            new GameFrame(new WorldPanel(size));
+            return;
+        }
         new GameFrame();
     }
 }
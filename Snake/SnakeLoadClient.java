@@ -0,0 +1,190 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for {@link SnakeServer}: opens many connections, each on its
+ * own virtual thread, decodes every message and steers at random away from
+ * the walls. Reports throughput and how long each tick takes to reach a
+ * client, measured from the server's tick start. That uses the server's
+ * nanoTime, so it only means something with both on the same machine.
+ *
+ * <pre>java SnakeLoadClient [clients] [--host localhost] [--port 5555] [--seconds 60]</pre>
+ */
+public class SnakeLoadClient {
+    private final String host;
+    private final int port;
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LatencyHistogram delivery = new LatencyHistogram();
+    private final LatencyHistogram totalDelivery = new LatencyHistogram();
+    private volatile boolean running = true;
+
+    public SnakeLoadClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    private void play(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            connected.incrementAndGet();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 8192));
+            OutputStream out = socket.getOutputStream();
+            byte[] data = new byte[4096];
+            int cols = 0;
+            int rows = 0;
+            char direction = 0;
+            while (running) {
+                int length = in.readInt();
+                if (length > data.length) {
+                    data = new byte[Math.max(length, data.length * 2)];
+                }
+                in.readFully(data, 0, length);
+                long received = System.nanoTime();
+                messages.increment();
+                bytes.add(length + 4);
+
+                ByteBuffer message = ByteBuffer.wrap(data, 0, length);
+                byte type = message.get();
+                if (type == SnakeServer.WELCOME) {
+                    message.getInt();
+                    cols = message.getShort();
+                    rows = message.getShort();
+                    continue;
+                }
+                message.getInt();
+                long sent = message.getLong();
+                int head = message.getInt();
+                message.getInt();
+                message.getShort();
+                message.getShort();
+                delivery.record(received - sent);
+                totalDelivery.record(received - sent);
+                if (type == SnakeServer.DELTA) {
+                    countEvents(message);
+                }
+
+                if (head < 0) {
+                    direction = 0;
+                    continue;
+                }
+                char turn = steer(head % cols, head / cols, cols, rows, direction, random);
+                if (turn != direction) {
+                    out.write(turn);
+                    direction = turn;
+                }
+            }
+        } catch (EOFException e) {
+            // Server closed the connection
+        } catch (IOException e) {
+            if (running) {
+                failed.incrementAndGet();
+            }
+        } finally {
+            connected.decrementAndGet();
+        }
+    }
+
+    private void countEvents(ByteBuffer message) {
+        int regions = message.get();
+        for (int r = 0; r < regions; r++) {
+            message.get();
+            int end = message.getShort() + message.position();
+            while (message.position() < end) {
+                byte kind = message.get();
+                message.get();
+                if (kind == SharedBoard.SET) {
+                    message.getInt();
+                }
+                events.increment();
+            }
+        }
+    }
+
+    // Mostly straight on, an occasional random turn, and never into a wall
+    private static char steer(int x, int y, int cols, int rows, char direction, SplittableRandom random) {
+        if (direction != 0 && random.nextInt(8) != 0 && stays(x, y, cols, rows, direction)) {
+            return direction;
+        }
+        int start = random.nextInt(4);
+        for (int i = 0; i < 4; i++) {
+            char d = "UDLR".charAt((start + i) & 3);
+            if ((direction == 0 || d != SnakePolicy.opposite(direction)) && stays(x, y, cols, rows, d)) {
+                return d;
+            }
+        }
+        return direction;
+    }
+
+    private static boolean stays(int x, int y, int cols, int rows, char d) {
+        return switch (d) {
+            case 'U' -> y > 0;
+            case 'D' -> y < rows - 1;
+            case 'L' -> x > 0;
+            default -> x < cols - 1;
+        };
+    }
+
+    public void run(int clients, int seconds) throws InterruptedException {
+        long seed = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            long clientSeed = seed + i;
+            Thread.ofVirtual().name("load-" + i).start(() -> play(clientSeed));
+            if (i % 200 == 199) {
+                // Let the accept backlog drain instead of overflowing it
+                Thread.sleep(20);
+            }
+        }
+
+        long start = System.nanoTime();
+        long lastMessages = 0;
+        long lastBytes = 0;
+        long lastEvents = 0;
+        for (int s = 5; s <= seconds; s += 5) {
+            Thread.sleep(Math.max(0, start + s * 1_000_000_000L - System.nanoTime()) / 1_000_000);
+            long m = messages.sum();
+            long b = bytes.sum();
+            long e = events.sum();
+            System.out.printf("%3d s  connected %d  failed %d  %.0f msg/s  %.1f MB/s  %.0f events/s%n"
+                            + "       delivery %s%n",
+                    s, connected.get(), failed.get(), (m - lastMessages) / 5.0, (b - lastBytes) / 5e6,
+                    (e - lastEvents) / 5.0, delivery.summary());
+            delivery.reset();
+            lastMessages = m;
+            lastBytes = b;
+            lastEvents = e;
+        }
+        running = false;
+        System.out.printf("total %d messages, %.1f MB%n  delivery %s%n",
+                messages.sum(), bytes.sum() / 1e6, totalDelivery.summary());
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int clients = 10_000;
+        String host = "localhost";
+        int port = 5555;
+        int seconds = 60;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                default -> clients = Integer.parseInt(args[i]);
+            }
+        }
+        new SnakeLoadClient(host, port).run(clients, seconds);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.random.RandomGenerator;
+
+/** Chooses the next direction for a bot-driven snake. */
+public interface SnakePolicy {
+    char nextDirection(SnakeBoard board, RandomGenerator random);
+
+    /** Turns at random, but never straight into a wall or its own body if it can help it. */
+    SnakePolicy RANDOM = (board, random) -> {
+        char current = board.getDirection();
+        int start = random.nextInt(4);
+        for (int i = 0; i < 4; i++) {
+            char direction = "UDLR".charAt((start + i) & 3);
+            if (direction != opposite(current) && isSafe(board, direction)) {
+                return direction;
+            }
+        }
+        return current;
+    };
+
+    /** Heads for the apple along the axis with the larger gap, falling back to any safe turn. */
+    SnakePolicy GREEDY = (board, random) -> {
+        int head = board.segment(0);
+        int dx = board.cellX(board.getApple()) - board.cellX(head);
+        int dy = board.cellY(board.getApple()) - board.cellY(head);
+        char horizontal = dx < 0 ? 'L' : 'R';
+        char vertical = dy < 0 ? 'U' : 'D';
+        char first = Math.abs(dx) >= Math.abs(dy) ? horizontal : vertical;
+        char second = first == horizontal ? vertical : horizontal;
+        char current = board.getDirection();
+        if ((first == horizontal ? dx : dy) != 0 && first != opposite(current) && isSafe(board, first)) {
+            return first;
+        }
+        if ((second == horizontal ? dx : dy) != 0 && second != opposite(current) && isSafe(board, second)) {
+            return second;
+        }
+        return RANDOM.nextDirection(board, random);
+    };
+
+    static char opposite(char direction) {
+        return switch (direction) {
+            case 'U' -> 'D';
+            case 'D' -> 'U';
+            case 'L' -> 'R';
+            default -> 'L';
+        };
+    }
+
+    static boolean isSafe(SnakeBoard board, char direction) {
+        int head = board.segment(0);
+        int x = board.cellX(head);
+        int y = board.cellY(head);
+        switch (direction) {
+            case 'U' -> y--;
+            case 'D' -> y++;
+            case 'L' -> x--;
+            case 'R' -> x++;
+        }
+        if (x < 0 || x >= board.getCols() || y < 0 || y >= board.getRows()) {
+            return false;
+        }
+        return !board.isOccupied(y * board.getCols() + x);
+    }
+}
@@ -0,0 +1,429 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Authoritative multiplayer Snake: one {@link SharedBoard} ticked at a fixed
+ * rate on a single thread, and one virtual thread per TCP connection writing
+ * its updates (plus a child parked in read() for turns). Each
+ * client sees a window of VIEW x VIEW regions around its head and, every tick,
+ * receives only the cells that changed inside it.
+ *
+ * <pre>java SnakeServer [--port 5555] [--size 1024] [--players 16384] [--rate 10]</pre>
+ *
+ * Every message is big-endian and length-prefixed:
+ * <pre>
+ * int   length of what follows
+ * byte  type
+ * WELCOME   int id, short cols, short rows, byte regionSize, byte view
+ * SNAPSHOT  header, then for each of the VIEW x VIEW regions, row by row:
+ *           16 shorts of occupied bits, 16 shorts of apple bits
+ * DELTA     header, byte regions, then per region with changes:
+ *           byte index in the view, short byte count,
+ *           events: byte kind, byte cell in region, int owner (SET only)
+ * header:   int tick, long server nanoTime at tick start, int head cell or -1,
+ *           int length, short view x, short view y (in regions)
+ * </pre>
+ * Clients send single bytes 'U', 'D', 'L' or 'R' to turn.
+ */
+public class SnakeServer {
+    static final byte WELCOME = 1;
+    static final byte SNAPSHOT = 2;
+    static final byte DELTA = 3;
+    static final int REGION_SHIFT = 4;
+    static final int REGION_SIZE = 1 << REGION_SHIFT;
+    static final int VIEW = 3;
+    static final int HEADER_SIZE = 4 + 1 + 4 + 8 + 4 + 4 + 2 + 2;
+
+    private static final int MAILBOX_SIZE = 32;
+    private static final int RESPAWN_TICKS = 20;
+
+    private final SharedBoard board;
+    private final ServerSocket serverSocket;
+    private final long tickNanos;
+    private final int regionCols;
+    private final int regionRows;
+    private final Connection[] clients;
+    private final ConcurrentLinkedQueue<Connection> joins = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Connection> leaves = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LatencyHistogram tickTimes = new LatencyHistogram();
+    private int[] regionBytes;
+    private long resyncs;
+    private int tick;
+    private volatile boolean running = true;
+
+    public SnakeServer(int port, int size, int maxPlayers, int rate) throws IOException {
+        this.board = new SharedBoard(size, size, maxPlayers, 4, new SplittableRandom());
+        this.serverSocket = new ServerSocket(port, 4096);
+        this.tickNanos = 1_000_000_000L / rate;
+        this.regionCols = size >> REGION_SHIFT;
+        this.regionRows = size >> REGION_SHIFT;
+        this.clients = new Connection[maxPlayers];
+        this.regionBytes = new int[regionCols * regionRows];
+    }
+
+    /** Accepts connections in the background and ticks on the calling thread until {@link #close}. */
+    public void run() {
+        Thread.ofPlatform().daemon().name("snake-accept").start(this::accept);
+        long next = System.nanoTime();
+        long nextReport = next + 5_000_000_000L;
+        while (running) {
+            long start = System.nanoTime();
+            tick(start);
+            tickTimes.record(System.nanoTime() - start);
+
+            if (start >= nextReport) {
+                report();
+                nextReport += 5_000_000_000L;
+            }
+            next += tickNanos;
+            long now = System.nanoTime();
+            if (next < now - 10 * tickNanos) {
+                // Too far behind to catch up; skip the missed ticks instead of bursting
+                next = now;
+            }
+            while ((now = System.nanoTime()) < next) {
+                LockSupport.parkNanos(next - now);
+            }
+        }
+    }
+
+    private void accept() {
+        int count = 0;
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread.ofVirtual().name("snake-client-" + count++).start(new Connection(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private void tick(long startNanos) {
+        // Joins before leaves, and a connection that has already closed is
+        // never seated: one that fails straight after joining is in both
+        // queues, and must not be left holding a snake nobody is playing
+        Connection connection;
+        while ((connection = joins.poll()) != null) {
+            if (connection.closed) {
+                continue;
+            }
+            int id = board.join();
+            if (id < 0) {
+                connection.mailbox.offer(Update.CLOSE);
+                continue;
+            }
+            connection.id = id;
+            connection.resync = true;
+            clients[id] = connection;
+        }
+        while ((connection = leaves.poll()) != null) {
+            if (connection.id >= 0) {
+                board.leave(connection.id);
+                clients[connection.id] = null;
+            }
+        }
+
+        for (Connection client : clients) {
+            if (client == null) {
+                continue;
+            }
+            if (board.isAlive(client.id)) {
+                board.setDirection(client.id, client.requested);
+            } else if (tick >= client.respawnTick) {
+                if (board.spawn(client.id)) {
+                    client.requested = 0;
+                } else {
+                    client.respawnTick = tick + RESPAWN_TICKS;
+                }
+            }
+        }
+
+        board.tick();
+        tick++;
+        Frame frame = encodeChanges(startNanos);
+        board.clearChanges();
+
+        for (Connection client : clients) {
+            if (client == null) {
+                continue;
+            }
+            boolean alive = board.isAlive(client.id);
+            if (client.alive && !alive) {
+                client.respawnTick = tick + RESPAWN_TICKS;
+            }
+            client.alive = alive;
+            int head = alive ? board.segment(client.id, 0) : -1;
+            if (head >= 0) {
+                int viewX = clamp((head % board.getCols() >> REGION_SHIFT) - VIEW / 2, regionCols - VIEW);
+                int viewY = clamp((head / board.getCols() >> REGION_SHIFT) - VIEW / 2, regionRows - VIEW);
+                if (viewX != client.viewX || viewY != client.viewY) {
+                    client.viewX = viewX;
+                    client.viewY = viewY;
+                    client.resync = true;
+                }
+            }
+            byte[] snapshot = client.resync ? snapshot(client.viewX, client.viewY) : null;
+            Update update = new Update(frame, head, board.length(client.id), client.viewX, client.viewY, snapshot);
+            if (client.mailbox.offer(update)) {
+                client.resync = false;
+            } else {
+                // The client is too far behind for deltas to be any use: start it over from a snapshot
+                client.mailbox.clear();
+                client.resync = true;
+                resyncs++;
+            }
+        }
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    // Sorts this tick's changes by region (stable, so order within a region is
+    // kept) and encodes them once for every client that can see that region
+    private Frame encodeChanges(long startNanos) {
+        int cols = board.getCols();
+        int regions = regionBytes.length;
+        Arrays.fill(regionBytes, 0);
+        for (int i = 0; i < board.changes(); i++) {
+            regionBytes[regionOf(board.changeCell(i), cols)] += board.changeKind(i) == SharedBoard.SET ? 6 : 2;
+        }
+        int[] offsets = new int[regions + 1];
+        for (int r = 0; r < regions; r++) {
+            offsets[r + 1] = offsets[r] + regionBytes[r];
+        }
+        byte[] events = new byte[offsets[regions]];
+        ByteBuffer buffer = ByteBuffer.wrap(events);
+        int[] cursor = regionBytes;
+        System.arraycopy(offsets, 0, cursor, 0, regions);
+        for (int i = 0; i < board.changes(); i++) {
+            int cell = board.changeCell(i);
+            int region = regionOf(cell, cols);
+            int local = ((cell / cols) & (REGION_SIZE - 1)) << REGION_SHIFT | (cell % cols) & (REGION_SIZE - 1);
+            byte kind = board.changeKind(i);
+            buffer.position(cursor[region]);
+            buffer.put(kind).put((byte) local);
+            if (kind == SharedBoard.SET) {
+                buffer.putInt(board.changeOwner(i));
+            }
+            cursor[region] = buffer.position();
+        }
+        return new Frame(tick, startNanos, events, offsets);
+    }
+
+    private int regionOf(int cell, int cols) {
+        return (cell / cols >> REGION_SHIFT) * regionCols + (cell % cols >> REGION_SHIFT);
+    }
+
+    private byte[] snapshot(int viewX, int viewY) {
+        ByteBuffer buffer = ByteBuffer.allocate(VIEW * VIEW * REGION_SIZE * 4);
+        for (int ry = viewY; ry < viewY + VIEW; ry++) {
+            for (int rx = viewX; rx < viewX + VIEW; rx++) {
+                int x = rx << REGION_SHIFT;
+                for (int y = ry << REGION_SHIFT; y < (ry + 1) << REGION_SHIFT; y++) {
+                    buffer.putShort((short) board.occupiedBits(x, y));
+                }
+                for (int y = ry << REGION_SHIFT; y < (ry + 1) << REGION_SHIFT; y++) {
+                    buffer.putShort((short) board.appleBits(x, y));
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    private void report() {
+        System.out.printf("tick %d  players %d  alive %d  sent %.1f MB/s  resyncs %d%n  tick time %s%n",
+                tick, connected.get(), board.getAliveCount(), bytesSent.sumThenReset() / 5e6, resyncs,
+                tickTimes.summary());
+        tickTimes.reset();
+    }
+
+    /** One tick's changes, encoded once and shared by every client. */
+    private static final class Frame {
+        final int tick;
+        final long nanos;
+        final byte[] events;
+        final int[] offsets;
+
+        Frame(int tick, long nanos, byte[] events, int[] offsets) {
+            this.tick = tick;
+            this.nanos = nanos;
+            this.events = events;
+            this.offsets = offsets;
+        }
+    }
+
+    /** What one client needs to build its message for a tick. */
+    private static final class Update {
+        static final Update CLOSE = new Update(null, -1, 0, 0, 0, null);
+
+        final Frame frame;
+        final int head;
+        final int length;
+        final int viewX;
+        final int viewY;
+        final byte[] snapshot;
+
+        Update(Frame frame, int head, int length, int viewX, int viewY, byte[] snapshot) {
+            this.frame = frame;
+            this.head = head;
+            this.length = length;
+            this.viewX = viewX;
+            this.viewY = viewY;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private class Connection implements Runnable {
+        final Socket socket;
+        final ArrayBlockingQueue<Update> mailbox = new ArrayBlockingQueue<>(MAILBOX_SIZE);
+        // Written by the connection's thread, read by the tick
+        volatile char requested;
+        // Set by the connection's thread before it queues its leave
+        volatile boolean closed;
+        // Owned by the tick thread
+        int id = -1;
+        int viewX;
+        int viewY;
+        int respawnTick;
+        boolean alive;
+        boolean resync;
+        private ByteBuffer buffer = ByteBuffer.allocate(2048);
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            connected.incrementAndGet();
+            joins.add(this);
+            try (socket) {
+                socket.setTcpNoDelay(true);
+                OutputStream out = socket.getOutputStream();
+                // Turns arrive rarely, so a second virtual thread waits for them
+                // in read() rather than this one polling every tick
+                Thread.ofVirtual().name(Thread.currentThread().getName() + "-turns").start(this::readTurns);
+                boolean welcomed = false;
+                while (running) {
+                    Update update = mailbox.take();
+                    if (update == Update.CLOSE) {
+                        break;
+                    }
+                    buffer.clear();
+                    if (!welcomed) {
+                        ensure(16);
+                        buffer.putInt(11).put(WELCOME).putInt(id)
+                                .putShort((short) board.getCols()).putShort((short) board.getRows())
+                                .put((byte) REGION_SIZE).put((byte) VIEW);
+                        welcomed = true;
+                    }
+                    encode(update);
+                    out.write(buffer.array(), 0, buffer.position());
+                    bytesSent.add(buffer.position());
+                }
+            } catch (IOException | InterruptedException e) {
+                // The client went away; the tick thread tidies up its snake
+            } finally {
+                connected.decrementAndGet();
+                closed = true;
+                leaves.add(this);
+            }
+        }
+
+        private void readTurns() {
+            try {
+                InputStream in = socket.getInputStream();
+                int b;
+                while ((b = in.read()) >= 0) {
+                    requested = (char) b;
+                }
+                // Closing makes the next write fail, which ends the connection
+                socket.close();
+            } catch (IOException e) {
+                // Already closed by the writing side
+            }
+        }
+
+        private void encode(Update update) {
+            Frame frame = update.frame;
+            int start = buffer.position();
+            ensure(HEADER_SIZE + 1);
+            buffer.putInt(0).put(update.snapshot != null ? SNAPSHOT : DELTA)
+                    .putInt(frame.tick).putLong(frame.nanos).putInt(update.head).putInt(update.length)
+                    .putShort((short) update.viewX).putShort((short) update.viewY);
+            if (update.snapshot != null) {
+                ensure(update.snapshot.length);
+                buffer.put(update.snapshot);
+            } else {
+                int countAt = buffer.position();
+                buffer.put((byte) 0);
+                int regions = 0;
+                for (int i = 0; i < VIEW * VIEW; i++) {
+                    int region = (update.viewY + i / VIEW) * regionCols + update.viewX + i % VIEW;
+                    int from = frame.offsets[region];
+                    int length = frame.offsets[region + 1] - from;
+                    if (length > 0) {
+                        ensure(3 + length);
+                        buffer.put((byte) i).putShort((short) length).put(frame.events, from, length);
+                        regions++;
+                    }
+                }
+                buffer.put(countAt, (byte) regions);
+            }
+            buffer.putInt(start, buffer.position() - start - 4);
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 5555;
+        int size = 1024;
+        int players = 16384;
+        int rate = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--size" -> size = Integer.parseInt(args[++i]);
+                case "--players" -> players = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (size % 64 != 0 || size < 64) {
+            throw new IllegalArgumentException("Board size must be a multiple of 64: " + size);
+        }
+        System.out.printf("Snake server on port %d, %dx%d board, %d players max, %d ticks/s%n",
+                port, size, size, players, rate);
+        new SnakeServer(port, size, players, rate).run();
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays complete Snake games headlessly with a bot policy, spread across all
+ * cores, and reports throughput and the score distribution.
+ *
+ * <pre>java SnakeSimulator [games] [--policy greedy|random] [--size cells] [--seed n]</pre>
+ */
+public class SnakeSimulator {
+    private static final int GAMES_PER_TASK = 256;
+
+    private final int cols;
+    private final int rows;
+    private final int initialLength;
+    private final SnakePolicy policy;
+    // A game that goes this long without an apple is scored as it stands
+    private final int starvationLimit;
+
+    public SnakeSimulator(int cols, int rows, int initialLength, SnakePolicy policy) {
+        this.cols = cols;
+        this.rows = rows;
+        this.initialLength = initialLength;
+        this.policy = policy;
+        this.starvationLimit = 2 * cols * rows;
+    }
+
+    public Stats run(long games, long seed) {
+        return ForkJoinPool.commonPool().invoke(new Batch(0, games, new SplittableRandom(seed)));
+    }
+
+    private Stats play(long games, SplittableRandom random) {
+        Stats stats = new Stats(cols * rows);
+        SnakeBoard board = new SnakeBoard(cols, rows, initialLength, random);
+        for (long game = 0; game < games; game++) {
+            board.reset();
+            long ticks = 0;
+            long lastMeal = 0;
+            int eaten = 0;
+            while (board.isRunning()) {
+                board.setDirection(policy.nextDirection(board, random));
+                board.tick();
+                ticks++;
+                if (board.getApplesEaten() != eaten) {
+                    eaten = board.getApplesEaten();
+                    lastMeal = ticks;
+                } else if (ticks - lastMeal > starvationLimit) {
+                    stats.starved++;
+                    break;
+                }
+            }
+            stats.games++;
+            stats.ticks += ticks;
+            stats.scores[eaten]++;
+        }
+        return stats;
+    }
+
+    private class Batch extends RecursiveTask<Stats> {
+        private final long from;
+        private final long to;
+        private final SplittableRandom random;
+
+        Batch(long from, long to, SplittableRandom random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                return play(to - from, random);
+            }
+            long mid = (from + to) >>> 1;
+            // Splitting before forking keeps every batch's stream fixed by the seed alone
+            Batch left = new Batch(from, mid, random.split());
+            Batch right = new Batch(mid, to, random.split());
+            left.fork();
+            Stats stats = right.compute();
+            stats.merge(left.join());
+            return stats;
+        }
+    }
+
+    public static class Stats {
+        long games;
+        long ticks;
+        long starved;
+        final long[] scores;
+
+        Stats(int cells) {
+            scores = new long[cells + 1];
+        }
+
+        void merge(Stats other) {
+            games += other.games;
+            ticks += other.ticks;
+            starved += other.starved;
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] += other.scores[i];
+            }
+        }
+
+        double meanScore() {
+            long total = 0;
+            for (int i = 0; i < scores.length; i++) {
+                total += i * scores[i];
+            }
+            return games == 0 ? 0 : (double) total / games;
+        }
+
+        int percentile(double p) {
+            long rank = (long) Math.ceil(p * games);
+            long seen = 0;
+            for (int i = 0; i < scores.length; i++) {
+                seen += scores[i];
+                if (seen >= rank && seen > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+
+        int maxScore() {
+            for (int i = scores.length - 1; i > 0; i--) {
+                if (scores[i] > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = 1_000_000;
+        long seed = System.nanoTime();
+        int size = 24;
+        SnakePolicy policy = SnakePolicy.GREEDY;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--size" -> size = Integer.parseInt(args[++i]);
+                case "--policy" -> policy = args[++i].equals("random") ? SnakePolicy.RANDOM : SnakePolicy.GREEDY;
+                default -> games = Long.parseLong(args[i]);
+            }
+        }
+
+        SnakeSimulator simulator = new SnakeSimulator(size, size, 6, policy);
+        long start = System.nanoTime();
+        Stats stats = simulator.run(games, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games on a %dx%d board, %d threads, seed %d%n",
+                stats.games, size, size, ForkJoinPool.getCommonPoolParallelism(), seed);
+        System.out.printf("%.2f s, %.0f games/s, %.0f ticks/s%n",
+                seconds, stats.games / seconds, stats.ticks / seconds);
+        System.out.printf("score mean %.2f  p50 %d  p90 %d  p99 %d  max %d  starved %d%n",
+                stats.meanScore(), stats.percentile(0.5), stats.percentile(0.9),
+                stats.percentile(0.99), stats.maxScore(), stats.starved);
+    }
+}
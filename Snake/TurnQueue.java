@@ -0,0 +1,115 @@
+/**
+ * Turns pressed but not yet played, oldest first. The key handler offers and
+ * the tick takes at most one per move, so two quick presses inside one tick
+ * both count instead of the second overwriting the first. Single producer,
+ * single consumer: each index has exactly one writer, so no locks are needed.
+ */
+public class TurnQueue {
+    private static final int CAPACITY = 4;
+    private static final int MASK = CAPACITY - 1;
+
+    private final char[] turns = new char[CAPACITY];
+    private final long[] pressedAt = new long[CAPACITY];
+    // Next turn to take; written only by the consumer
+    private volatile long head;
+    // Next free slot; written only by the producer
+    private volatile long tail;
+
+    // Producer side
+    private long dropped;
+    // Consumer side
+    private long applied;
+    private long lastLatency;
+    private long maxLatency;
+    private long totalLatency;
+
+    /**
+     * Queues a turn pressed at {@code pressedNanos}. It is checked against the
+     * last queued turn, or {@code current} when none is waiting, and refused if
+     * it would change nothing or reverse the snake. Returns whether it was queued.
+     */
+    public boolean offer(char turn, char current, long pressedNanos) {
+        long t = tail;
+        long h = head;
+        char previous = t == h ? current : turns[(int) (t - 1) & MASK];
+        if (turn == previous || turn == opposite(previous)) {
+            return false;
+        }
+        if (t - h == CAPACITY) {
+            dropped++;
+            return false;
+        }
+        int index = (int) t & MASK;
+        turns[index] = turn;
+        pressedAt[index] = pressedNanos;
+        // The volatile write publishes the slot to the consumer
+        tail = t + 1;
+        return true;
+    }
+
+    /**
+     * The turn for this move, or 0 if none is waiting. {@code current} is the
+     * direction the snake is actually moving; a queued turn that no longer fits
+     * it (the key handler may have checked against a stale direction) is
+     * skipped. Records how long the taken turn waited.
+     */
+    public char poll(char current, long nowNanos) {
+        long h = head;
+        while (h != tail) {
+            int index = (int) h & MASK;
+            char turn = turns[index];
+            long pressed = pressedAt[index];
+            // Read the slot before handing it back to the producer
+            head = ++h;
+            if (turn != current && turn != opposite(current)) {
+                lastLatency = nowNanos - pressed;
+                maxLatency = Math.max(maxLatency, lastLatency);
+                totalLatency += lastLatency;
+                applied++;
+                return turn;
+            }
+        }
+        return 0;
+    }
+
+    /** Forgets pending turns, e.g. when a new round starts. Consumer side only. */
+    public void clear() {
+        head = tail;
+    }
+
+    private static char opposite(char direction) {
+        return switch (direction) {
+            case 'U' -> 'D';
+            case 'D' -> 'U';
+            case 'L' -> 'R';
+            default -> 'L';
+        };
+    }
+
+    /** Key-to-move time of the last turn taken, in nanoseconds. */
+    public long getLastLatencyNanos() {
+        return lastLatency;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatency;
+    }
+
+    public long getAverageLatencyNanos() {
+        return applied == 0 ? 0 : totalLatency / applied;
+    }
+
+    public long getAppliedCount() {
+        return applied;
+    }
+
+    /** Turns refused because the queue was full. */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    public String summary() {
+        return String.format("%d turns, %d dropped, key to move avg %.1f ms, max %.1f ms",
+                applied, dropped, getAverageLatencyNanos() / 1e6, maxLatency / 1e6);
+    }
+}
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Snake rules for very large boards (up to 4096x4096). Occupancy is split into
+ * 64x64-cell chunks that are allocated when the snake first enters them and
+ * dropped again once it leaves, and apples are only kept near the head, so
+ * memory follows the snake rather than the board.
+ */
+public class WorldBoard {
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int APPLES = 48;
+    private static final int APPLE_RADIUS = 40;
+
+    private final int cols;
+    private final int rows;
+    private final int chunkCols;
+    private final int initialLength;
+    private final RandomGenerator random;
+    // One bit per cell, CHUNK_SIZE longs per chunk, null while the chunk is empty
+    private final long[][] chunks;
+    private final int[] population;
+    private final int[] apples = new int[APPLES];
+    private int[] body = new int[1024];
+    private int head;
+    private int length;
+    private int pendingGrowth;
+    private int allocatedChunks;
+    private int nextRefresh;
+    private int applesEaten;
+    private char direction;
+    private boolean running;
+
+    public WorldBoard(int cols, int rows, int initialLength, RandomGenerator random) {
+        if ((long) cols * rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Board too large: " + cols + "x" + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.chunkCols = (cols + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.initialLength = initialLength;
+        this.random = random;
+        int chunkRows = (rows + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunks = new long[chunkCols * chunkRows][];
+        this.population = new int[chunks.length];
+        reset();
+    }
+
+    public void reset() {
+        Arrays.fill(chunks, null);
+        Arrays.fill(population, 0);
+        allocatedChunks = 0;
+        head = 0;
+        length = 1;
+        body[0] = (rows / 2) * cols + cols / 2;
+        occupy(body[0]);
+        pendingGrowth = initialLength - 1;
+        applesEaten = 0;
+        direction = 'R';
+        running = true;
+        for (int i = 0; i < APPLES; i++) {
+            apples[i] = -1;
+            placeApple(i);
+        }
+    }
+
+    public void tick() {
+        if (!running) {
+            return;
+        }
+        int x = cellX(body[head]);
+        int y = cellY(body[head]);
+        switch (direction) {
+            case 'U' -> y--;
+            case 'D' -> y++;
+            case 'L' -> x--;
+            case 'R' -> x++;
+        }
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            running = false;
+            return;
+        }
+
+        int next = y * cols + x;
+        int apple = appleAt(next);
+        if (apple < 0) {
+            if (pendingGrowth > 0) {
+                pendingGrowth--;
+            } else {
+                vacate(segment(length - 1));
+                length--;
+            }
+        }
+        if (isOccupied(next)) {
+            running = false;
+            return;
+        }
+        if (length == body.length) {
+            grow();
+        }
+        head = head + 1 == body.length ? 0 : head + 1;
+        body[head] = next;
+        length++;
+        occupy(next);
+
+        if (apple >= 0) {
+            applesEaten++;
+            placeApple(apple);
+        }
+
+        // Apples left far behind are moved up one per tick, so some are always in view
+        nextRefresh = nextRefresh + 1 == APPLES ? 0 : nextRefresh + 1;
+        int stale = apples[nextRefresh];
+        if (stale < 0 || Math.abs(cellX(stale) - x) > 2 * APPLE_RADIUS || Math.abs(cellY(stale) - y) > 2 * APPLE_RADIUS) {
+            placeApple(nextRefresh);
+        }
+    }
+
+    // The ring only ever holds the snake, so it doubles as the snake grows
+    private void grow() {
+        int[] grown = new int[body.length * 2];
+        for (int i = 0; i < length; i++) {
+            grown[length - 1 - i] = segment(i);
+        }
+        body = grown;
+        head = length - 1;
+    }
+
+    private int appleAt(int cell) {
+        for (int i = 0; i < APPLES; i++) {
+            if (apples[i] == cell) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Rejection sampling is fine here: near the head the board is almost empty
+    private void placeApple(int index) {
+        int hx = cellX(body[head]);
+        int hy = cellY(body[head]);
+        for (int attempt = 0; attempt < 64; attempt++) {
+            int x = hx + random.nextInt(-APPLE_RADIUS, APPLE_RADIUS + 1);
+            int y = hy + random.nextInt(-APPLE_RADIUS, APPLE_RADIUS + 1);
+            if (x < 0 || x >= cols || y < 0 || y >= rows) {
+                continue;
+            }
+            int cell = y * cols + x;
+            if (!isOccupied(cell) && appleAt(cell) < 0) {
+                apples[index] = cell;
+                return;
+            }
+        }
+        apples[index] = -1;
+    }
+
+    public boolean isOccupied(int cell) {
+        long[] chunk = chunks[chunkOf(cell)];
+        return chunk != null && (chunk[bitRow(cell)] & (1L << (cellX(cell) & CHUNK_MASK))) != 0;
+    }
+
+    private void occupy(int cell) {
+        int index = chunkOf(cell);
+        if (chunks[index] == null) {
+            chunks[index] = new long[CHUNK_SIZE];
+            allocatedChunks++;
+        }
+        chunks[index][bitRow(cell)] |= 1L << (cellX(cell) & CHUNK_MASK);
+        population[index]++;
+    }
+
+    private void vacate(int cell) {
+        int index = chunkOf(cell);
+        chunks[index][bitRow(cell)] &= ~(1L << (cellX(cell) & CHUNK_MASK));
+        if (--population[index] == 0) {
+            chunks[index] = null;
+            allocatedChunks--;
+        }
+    }
+
+    private int chunkOf(int cell) {
+        return (cellY(cell) >> CHUNK_SHIFT) * chunkCols + (cellX(cell) >> CHUNK_SHIFT);
+    }
+
+    private int bitRow(int cell) {
+        return cellY(cell) & CHUNK_MASK;
+    }
+
+    /**
+     * Occupancy bits of one row of a chunk: bit i is cell
+     * {@code (chunkX * CHUNK_SIZE + i, y)}. Zero for chunks that were never allocated.
+     */
+    public long rowBits(int chunkX, int y) {
+        long[] chunk = chunks[(y >> CHUNK_SHIFT) * chunkCols + chunkX];
+        return chunk == null ? 0L : chunk[y & CHUNK_MASK];
+    }
+
+    /** Cell of the i-th segment, counting from the head. */
+    public int segment(int i) {
+        int index = head - i;
+        return body[index < 0 ? index + body.length : index];
+    }
+
+    public int cellX(int cell) {
+        return cell % cols;
+    }
+
+    public int cellY(int cell) {
+        return cell / cols;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** Cell of apple {@code i}, or -1 if there was no room for it. */
+    public int getApple(int i) {
+        return apples[i];
+    }
+
+    public int appleCount() {
+        return APPLES;
+    }
+
+    public int getAllocatedChunks() {
+        return allocatedChunks;
+    }
+
+    public int getApplesEaten() {
+        return applesEaten;
+    }
+
+    public char getDirection() {
+        return direction;
+    }
+
+    public void setDirection(char direction) {
+        this.direction = direction;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,199 @@
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Large-world Snake: a fixed-size viewport follows the head across a
+ * {@link WorldBoard}. Each frame rasterizes only the terrain tiles and occupied
+ * cells that fall inside the viewport, using pre-rendered tile images.
+ */
+public class WorldPanel extends JPanel implements ActionListener {
+    private static final int VIEW_WIDTH = 800;
+    private static final int VIEW_HEIGHT = 600;
+    private static final int UNIT_SIZE = 16;
+    private static final int TERRAIN_CELLS = 8;
+    private static final int DELAY = 75;
+    private static final Font HUD_FONT = new Font("Ink Free", Font.BOLD, 20);
+    private static final Font GAME_OVER_FONT = new Font("Ink Free", Font.BOLD, 75);
+
+    private final WorldBoard board;
+    private final TurnQueue turns = new TurnQueue();
+    private final BufferedImage terrainTile;
+    private final BufferedImage bodyTile;
+    private final BufferedImage headTile;
+    private final BufferedImage appleTile;
+    private final Timer timer;
+
+    public WorldPanel(int size) {
+        board = new WorldBoard(size, size, 6, new Random());
+        terrainTile = createTerrainTile();
+        bodyTile = createCellTile(new Color(45, 180, 0), false);
+        headTile = createCellTile(Color.green, false);
+        appleTile = createCellTile(Color.red, true);
+        this.setPreferredSize(new Dimension(VIEW_WIDTH, VIEW_HEIGHT));
+        this.setBackground(Color.black);
+        this.setFocusable(true);
+        this.addKeyListener(new MyKeyAdapter());
+        timer = new Timer(DELAY, this);
+        timer.start();
+    }
+
+    private static BufferedImage createTerrainTile() {
+        int size = TERRAIN_CELLS * UNIT_SIZE;
+        BufferedImage tile = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        for (int y = 0; y < TERRAIN_CELLS; y++) {
+            for (int x = 0; x < TERRAIN_CELLS; x++) {
+                g.setColor((x + y) % 2 == 0 ? new Color(12, 24, 12) : new Color(18, 32, 18));
+                g.fillRect(x * UNIT_SIZE, y * UNIT_SIZE, UNIT_SIZE, UNIT_SIZE);
+            }
+        }
+        g.dispose();
+        return tile;
+    }
+
+    private static BufferedImage createCellTile(Color color, boolean round) {
+        BufferedImage tile = new BufferedImage(UNIT_SIZE, UNIT_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tile.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(color);
+        if (round) {
+            g.fillOval(0, 0, UNIT_SIZE, UNIT_SIZE);
+        } else {
+            g.fillRect(0, 0, UNIT_SIZE, UNIT_SIZE);
+        }
+        g.dispose();
+        return tile;
+    }
+
+    public void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (!board.isRunning()) {
+            gameOver(g);
+            return;
+        }
+
+        int worldWidth = board.getCols() * UNIT_SIZE;
+        int worldHeight = board.getRows() * UNIT_SIZE;
+        int head = board.segment(0);
+        int cameraX = camera(board.cellX(head) * UNIT_SIZE, worldWidth, getWidth());
+        int cameraY = camera(board.cellY(head) * UNIT_SIZE, worldHeight, getHeight());
+
+        int firstCol = Math.max(0, cameraX / UNIT_SIZE);
+        int firstRow = Math.max(0, cameraY / UNIT_SIZE);
+        int lastCol = Math.min(board.getCols() - 1, (cameraX + getWidth() - 1) / UNIT_SIZE);
+        int lastRow = Math.min(board.getRows() - 1, (cameraY + getHeight() - 1) / UNIT_SIZE);
+
+        // Terrain, one cached tile per TERRAIN_CELLS square, clipped to the world edge
+        Shape clip = g.getClip();
+        g.clipRect(-cameraX, -cameraY, worldWidth, worldHeight);
+        int tileSize = TERRAIN_CELLS * UNIT_SIZE;
+        for (int ty = firstRow / TERRAIN_CELLS; ty <= lastRow / TERRAIN_CELLS; ty++) {
+            for (int tx = firstCol / TERRAIN_CELLS; tx <= lastCol / TERRAIN_CELLS; tx++) {
+                g.drawImage(terrainTile, tx * tileSize - cameraX, ty * tileSize - cameraY, null);
+            }
+        }
+        g.setClip(clip);
+
+        // Body, straight from the visible rows of the occupancy chunks
+        for (int y = firstRow; y <= lastRow; y++) {
+            for (int chunkX = firstCol >> WorldBoard.CHUNK_SHIFT; chunkX <= lastCol >> WorldBoard.CHUNK_SHIFT; chunkX++) {
+                int base = chunkX << WorldBoard.CHUNK_SHIFT;
+                long bits = board.rowBits(chunkX, y) & visibleMask(firstCol - base, lastCol - base);
+                while (bits != 0) {
+                    int x = base + Long.numberOfTrailingZeros(bits);
+                    g.drawImage(bodyTile, x * UNIT_SIZE - cameraX, y * UNIT_SIZE - cameraY, null);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        g.drawImage(headTile, board.cellX(head) * UNIT_SIZE - cameraX, board.cellY(head) * UNIT_SIZE - cameraY, null);
+
+        for (int i = 0; i < board.appleCount(); i++) {
+            int apple = board.getApple(i);
+            if (apple >= 0) {
+                int x = board.cellX(apple);
+                int y = board.cellY(apple);
+                if (x >= firstCol && x <= lastCol && y >= firstRow && y <= lastRow) {
+                    g.drawImage(appleTile, x * UNIT_SIZE - cameraX, y * UNIT_SIZE - cameraY, null);
+                }
+            }
+        }
+
+        g.setColor(Color.white);
+        g.setFont(HUD_FONT);
+        g.drawString("Score: " + board.getApplesEaten() + "   (" + board.cellX(head) + ", " + board.cellY(head) + ") of "
+                + board.getCols() + "x" + board.getRows() + "   chunks: " + board.getAllocatedChunks(), 10, 24);
+    }
+
+    // Keeps the head centred, but never scrolls past the edge of the world
+    private static int camera(int headPixel, int worldPixels, int viewPixels) {
+        if (worldPixels <= viewPixels) {
+            return (worldPixels - viewPixels) / 2;
+        }
+        int position = headPixel + UNIT_SIZE / 2 - viewPixels / 2;
+        return Math.max(0, Math.min(worldPixels - viewPixels, position));
+    }
+
+    // Bits from..to of a chunk row, with both ends clamped to the chunk
+    private static long visibleMask(int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, WorldBoard.CHUNK_SIZE - 1);
+        if (from > to) {
+            return 0L;
+        }
+        long upper = to == 63 ? -1L : (1L << (to + 1)) - 1;
+        return upper & (-1L << from);
+    }
+
+    public void gameOver(Graphics g) {
+        g.setColor(Color.red);
+        g.setFont(GAME_OVER_FONT);
+        FontMetrics metrics = getFontMetrics(g.getFont());
+        g.drawString("Game Over", (getWidth() - metrics.stringWidth("Game Over")) / 2, getHeight() / 2);
+
+        g.setFont(HUD_FONT);
+        FontMetrics metrics1 = getFontMetrics(g.getFont());
+        String score = "Score: " + board.getApplesEaten() + "   SPACE to restart";
+        g.drawString(score, (getWidth() - metrics1.stringWidth(score)) / 2, getHeight() / 2 + 50);
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (board.isRunning()) {
+            // One queued turn per move, so two quick presses cannot reverse the snake
+            char turn = turns.poll(board.getDirection(), System.nanoTime());
+            if (turn != 0) {
+                board.setDirection(turn);
+            }
+            board.tick();
+        }
+        repaint();
+    }
+
+    public class MyKeyAdapter extends KeyAdapter {
+        @Override
+        public void keyPressed(KeyEvent e) {
+            long now = System.nanoTime();
+            switch (e.getKeyCode()) {
+                case KeyEvent.VK_LEFT -> turns.offer('L', board.getDirection(), now);
+                case KeyEvent.VK_RIGHT -> turns.offer('R', board.getDirection(), now);
+                case KeyEvent.VK_UP -> turns.offer('U', board.getDirection(), now);
+                case KeyEvent.VK_DOWN -> turns.offer('D', board.getDirection(), now);
+                case KeyEvent.VK_SPACE -> {
+                    if (!board.isRunning()) {
+                        // The timer runs on this thread too, so the queue can be cleared here
+                        turns.clear();
+                        board.reset();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+import java.util.Arrays;
+
+/**
+ * Steers a {@link SnakeBoard3D} snake toward the food with A* over the
+ * wrap-around grid. A path is only taken if, once the snake has eaten at its
+ * end, the head can still reach the tail; otherwise the snake chases its own
+ * tail until a safe path opens up. The open set is a binary heap of packed
+ * cells with decrease-key, and costs, parents and visit marks live in arrays
+ * indexed by cell and invalidated by bumping a stamp, so planning a move
+ * allocates nothing.
+ */
+public class Autopilot3D {
+    private static final int[] DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, 1, -1};
+
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int cells;
+
+    // A* state: g cost and parent of each cell seen in the current search
+    private final int[] cost;
+    private final int[] cameFrom;
+    private final int[] seen;
+    private int searchStamp;
+
+    // Binary min-heap of cells, with their keys and each cell's heap slot
+    private final int[] heap;
+    private final long[] heapKey;
+    private final int[] heapIndex;
+    private int heapSize;
+
+    // Flood fills for the safety checks
+    private final int[] queue;
+    private final int[] distance;
+    private final int[] reached;
+    private int fillStamp;
+    private final int[] blocked;
+    private int blockStamp;
+
+    private final int[] path;
+    private final int[] neighbours = new int[6];
+
+    private final LatencyHistogram planTimes = new LatencyHistogram();
+    private long lastPlanNanos;
+    private long safePaths;
+    private long tailChases;
+
+    public Autopilot3D(int width, int height, int depth) {
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.cells = width * height * depth;
+        this.cost = new int[cells];
+        this.cameFrom = new int[cells];
+        this.seen = new int[cells];
+        this.heap = new int[cells];
+        this.heapKey = new long[cells];
+        this.heapIndex = new int[cells];
+        this.queue = new int[cells];
+        this.distance = new int[cells];
+        this.reached = new int[cells];
+        this.blocked = new int[cells];
+        this.path = new int[cells];
+    }
+
+    /** Sets the board's direction for the coming move. */
+    public void steer(SnakeBoard3D board) {
+        long start = System.nanoTime();
+        int head = board.segment(0);
+        int target = -1;
+
+        int food = board.getFood();
+        if (food >= 0) {
+            int steps = findPath(board, head, food);
+            if (steps > 0 && tailReachableAfter(board, steps)) {
+                target = path[0];
+                safePaths++;
+            }
+        }
+        if (target < 0) {
+            target = chaseTail(board, head);
+            tailChases++;
+        }
+        if (target >= 0) {
+            neighbours(head);
+            for (int d = 0; d < 6; d++) {
+                if (neighbours[d] == target) {
+                    board.setDirection(DX[d], DY[d], DZ[d]);
+                    break;
+                }
+            }
+        }
+
+        lastPlanNanos = System.nanoTime() - start;
+        planTimes.record(lastPlanNanos);
+    }
+
+    // A* from start to goal around the body. On success fills path[0..steps)
+    // with the cells to step through, goal last, and returns steps; else -1.
+    private int findPath(SnakeBoard3D board, int start, int goal) {
+        nextSearch();
+        heapSize = 0;
+        cost[start] = 0;
+        seen[start] = searchStamp;
+        push(start, key(0, heuristic(start, goal)));
+        while (heapSize > 0) {
+            int current = pop();
+            if (current == goal) {
+                int steps = cost[goal];
+                for (int cell = goal, i = steps - 1; i >= 0; cell = cameFrom[cell], i--) {
+                    path[i] = cell;
+                }
+                return steps;
+            }
+            int g = cost[current] + 1;
+            neighbours(current);
+            for (int d = 0; d < 6; d++) {
+                int next = neighbours[d];
+                if (board.isOccupied(next)) {
+                    continue;
+                }
+                if (seen[next] != searchStamp) {
+                    seen[next] = searchStamp;
+                    cost[next] = g;
+                    cameFrom[next] = current;
+                    push(next, key(g, heuristic(next, goal)));
+                } else if (g < cost[next] && heapIndex[next] >= 0) {
+                    // With a consistent heuristic closed cells never improve
+                    cost[next] = g;
+                    cameFrom[next] = current;
+                    heapKey[heapIndex[next]] = key(g, heuristic(next, goal));
+                    siftUp(heapIndex[next]);
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Orders by f, breaking ties toward the deeper cell so A* runs straight at
+    // the goal instead of widening over every equally good cell
+    private static long key(int g, int h) {
+        return ((long) (g + h) << 32) - g;
+    }
+
+    // Manhattan distance where each axis may go either way round
+    private int heuristic(int from, int to) {
+        int dx = Math.abs(from % width - to % width);
+        int dy = Math.abs(from / width % height - to / width % height);
+        int dz = Math.abs(from / (width * height) - to / (width * height));
+        return Math.min(dx, width - dx) + Math.min(dy, height - dy) + Math.min(dz, depth - dz);
+    }
+
+    /**
+     * Whether the snake, having followed path[0..steps) and eaten at its end,
+     * could still reach its own tail. The body at that moment is the last
+     * length + 1 cells of the body followed by the path.
+     */
+    private boolean tailReachableAfter(SnakeBoard3D board, int steps) {
+        int length = board.length() + 1;
+        nextBlock();
+        int tail;
+        if (steps >= length) {
+            tail = path[steps - length];
+            for (int i = steps - length + 1; i < steps; i++) {
+                blocked[path[i]] = blockStamp;
+            }
+        } else {
+            int kept = length - steps;
+            tail = board.segment(kept - 1);
+            for (int i = 0; i < kept - 1; i++) {
+                blocked[board.segment(i)] = blockStamp;
+            }
+            for (int i = 0; i < steps; i++) {
+                blocked[path[i]] = blockStamp;
+            }
+        }
+        return flood(board, path[steps - 1], tail, false) >= 0;
+    }
+
+    /**
+     * Picks the free neighbour of the head that is farthest from the tail but
+     * still connected to it, so the snake stalls for time. Falls back to any
+     * free neighbour, or -1 if the snake is boxed in.
+     */
+    private int chaseTail(SnakeBoard3D board, int head) {
+        int tail = board.segment(board.length() - 1);
+        flood(board, tail, -1, true);
+        int fillMark = fillStamp;
+        neighbours(head);
+        int best = -1;
+        int bestDistance = -1;
+        int fallback = -1;
+        for (int d = 0; d < 6; d++) {
+            int next = neighbours[d];
+            if (board.isOccupied(next)) {
+                continue;
+            }
+            if (fallback < 0) {
+                fallback = next;
+            }
+            if (reached[next] == fillMark && distance[next] > bestDistance) {
+                bestDistance = distance[next];
+                best = next;
+            }
+        }
+        return best >= 0 ? best : fallback;
+    }
+
+    /**
+     * Breadth-first flood from start. Cells are open if they are free on the
+     * board ({@code onBoard}) or not blocked by the simulated body. Returns the
+     * distance to goal, or -1 if it is out of reach; goal is never taken as the
+     * first step, since moving straight into the tail is fatal on this board.
+     */
+    private int flood(SnakeBoard3D board, int start, int goal, boolean onBoard) {
+        nextFill();
+        int read = 0;
+        int write = 0;
+        queue[write++] = start;
+        reached[start] = fillStamp;
+        distance[start] = 0;
+        while (read < write) {
+            int current = queue[read++];
+            int dist = distance[current] + 1;
+            neighbours(current);
+            for (int d = 0; d < 6; d++) {
+                int next = neighbours[d];
+                if (next == goal) {
+                    if (current != start) {
+                        return dist;
+                    }
+                    continue;
+                }
+                if (reached[next] == fillStamp) {
+                    continue;
+                }
+                if (onBoard ? board.isOccupied(next) : blocked[next] == blockStamp) {
+                    continue;
+                }
+                reached[next] = fillStamp;
+                distance[next] = dist;
+                queue[write++] = next;
+            }
+        }
+        return -1;
+    }
+
+    // The six wrapped neighbours of a cell, in DX/DY/DZ order
+    private void neighbours(int cell) {
+        int layer = width * height;
+        int x = cell % width;
+        int y = cell / width % height;
+        int z = cell / layer;
+        neighbours[0] = x + 1 == width ? cell - x : cell + 1;
+        neighbours[1] = x == 0 ? cell + width - 1 : cell - 1;
+        neighbours[2] = y + 1 == height ? cell - y * width : cell + width;
+        neighbours[3] = y == 0 ? cell + (height - 1) * width : cell - width;
+        neighbours[4] = z + 1 == depth ? cell - z * layer : cell + layer;
+        neighbours[5] = z == 0 ? cell + (depth - 1) * layer : cell - layer;
+    }
+
+    private void push(int cell, long key) {
+        int i = heapSize++;
+        heap[i] = cell;
+        heapKey[i] = key;
+        heapIndex[cell] = i;
+        siftUp(i);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        int last = --heapSize;
+        if (last > 0) {
+            heap[0] = heap[last];
+            heapKey[0] = heapKey[last];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int cell = heap[i];
+        long key = heapKey[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKey[parent] <= key) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        heap[i] = cell;
+        heapKey[i] = key;
+        heapIndex[cell] = i;
+    }
+
+    private void siftDown(int i) {
+        int cell = heap[i];
+        long key = heapKey[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child]) {
+                child++;
+            }
+            if (heapKey[child] >= key) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        heap[i] = cell;
+        heapKey[i] = key;
+        heapIndex[cell] = i;
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        heapKey[to] = heapKey[from];
+        heapIndex[heap[to]] = to;
+    }
+
+    private void nextSearch() {
+        if (++searchStamp == 0) {
+            Arrays.fill(seen, 0);
+            searchStamp = 1;
+        }
+    }
+
+    private void nextFill() {
+        if (++fillStamp == 0) {
+            Arrays.fill(reached, 0);
+            fillStamp = 1;
+        }
+    }
+
+    private void nextBlock() {
+        if (++blockStamp == 0) {
+            Arrays.fill(blocked, 0);
+            blockStamp = 1;
+        }
+    }
+
+    public long getLastPlanNanos() {
+        return lastPlanNanos;
+    }
+
+    /** Planning time per move, in nanoseconds. */
+    public LatencyHistogram getPlanTimes() {
+        return planTimes;
+    }
+
+    /** Moves that followed a checked path to the food. */
+    public long getSafePaths() {
+        return safePaths;
+    }
+
+    /** Moves spent following the tail because no safe path to the food existed. */
+    public long getTailChases() {
+        return tailChases;
+    }
+}
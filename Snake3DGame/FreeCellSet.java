@@ -0,0 +1,64 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * The empty cells of a board, packed at the front of {@code cells} with
+ * {@code position} pointing back into it. Adding, removing and drawing a
+ * random free cell are all O(1); removal swaps the last free cell into the gap.
+ */
+public class FreeCellSet {
+    private final int[] cells;
+    private final int[] position;
+    private int size;
+
+    public FreeCellSet(int capacity) {
+        cells = new int[capacity];
+        position = new int[capacity];
+        fill();
+    }
+
+    /** Marks every cell as free again. */
+    public void fill() {
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = i;
+            position[i] = i;
+        }
+        size = cells.length;
+    }
+
+    public boolean contains(int cell) {
+        return position[cell] < size;
+    }
+
+    public void remove(int cell) {
+        int index = position[cell];
+        if (index >= size) {
+            return;
+        }
+        int last = cells[--size];
+        cells[index] = last;
+        position[last] = index;
+        cells[size] = cell;
+        position[cell] = size;
+    }
+
+    public void add(int cell) {
+        int index = position[cell];
+        if (index < size) {
+            return;
+        }
+        int first = cells[size];
+        cells[index] = first;
+        position[first] = index;
+        cells[size] = cell;
+        position[cell] = size++;
+    }
+
+    /** A uniformly random free cell, or -1 when the board is full. */
+    public int random(RandomGenerator random) {
+        return size == 0 ? -1 : cells[random.nextInt(size)];
+    }
+
+    public int size() {
+        return size;
+    }
+}
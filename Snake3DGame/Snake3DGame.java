@@ -1,24 +1,24 @@
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.geom.AffineTransform;
-import java.util.ArrayList;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.Random;
 import javax.swing.*;
 
 public class Snake3DGame extends JPanel implements ActionListener, KeyListener, MouseListener, MouseMotionListener {
-    private static final int TILE_SIZE = 20;
-    private static final int WIDTH = 15;
-    private static final int HEIGHT = 15;
-    private static final int DEPTH = 15;
+    private static final int DEFAULT_SIZE = 15;
     private static final int DELAY = 150;
     private static final int CUBE_SIZE = 300;
     
-    private ArrayList<Point3D> snake;
-    private Point3D food;
-    private int directionX, directionY, directionZ;
-    private boolean running = false;
+    private final SnakeBoard3D board;
+    private final SnakeRenderer3D renderer = new SnakeRenderer3D(CUBE_SIZE);
+    private final Autopilot3D autopilot;
+    private boolean autopilotOn;
+    private int rounds;
     private Timer timer;
-    private Random random;
+    // Each frame is drawn here, then copied to the screen in one go
+    private BufferedImage frame;
+    private long frameNanos;
     private double rotationAngleX = 0;
     private double rotationAngleY = 0;
     private boolean showControls = true;
@@ -28,13 +28,12 @@ public class Snake3DGame extends JPanel implements ActionListener, KeyListener,
     // Colors
     private final Color CUBE_COLOR = new Color(50, 50, 50, 150);
     private final Color GRID_COLOR = new Color(100, 100, 100, 100);
-    private final Color SNAKE_HEAD_COLOR = Color.GREEN;
-    private final Color SNAKE_BODY_COLOR = new Color(0, 150, 0);
-    private final Color FOOD_COLOR = Color.RED;
     private final Color TEXT_COLOR = Color.WHITE;
     
-    public Snake3DGame() {
-        random = new Random();
+    public Snake3DGame(int size, boolean autopilotOn) {
+        board = new SnakeBoard3D(size, size, size, new Random());
+        autopilot = new Autopilot3D(size, size, size);
+        this.autopilotOn = autopilotOn;
         setPreferredSize(new Dimension(600, 600));
         setBackground(Color.BLACK);
         setFocusable(true);
@@ -46,64 +45,43 @@ public class Snake3DGame extends JPanel implements ActionListener, KeyListener,
     }
     
     private void initGame() {
-        snake = new ArrayList<>();
-        snake.add(new Point3D(WIDTH / 2, HEIGHT / 2, DEPTH / 2));
-        
-        directionX = 1;
-        directionY = 0;
-        directionZ = 0;
-        
-        spawnFood();
-        
-        running = true;
+        board.reset();
         timer = new Timer(DELAY, this);
         timer.start();
     }
     
-    private void spawnFood() {
-        int x, y, z;
-        boolean onSnake;
-        
-        do {
-            x = random.nextInt(WIDTH);
-            y = random.nextInt(HEIGHT);
-            z = random.nextInt(DEPTH);
-            
-            onSnake = false;
-            for (Point3D segment : snake) {
-                if (segment.x == x && segment.y == y && segment.z == z) {
-                    onSnake = true;
-                    break;
-                }
-            }
-        } while (onSnake);
-        
-        food = new Point3D(x, y, z);
-    }
-    
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
+        if (frame == null || frame.getWidth() != getWidth() || frame.getHeight() != getHeight()) {
+            frame = new BufferedImage(Math.max(1, getWidth()), Math.max(1, getHeight()), BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g2d = frame.createGraphics();
+        g2d.setColor(getBackground());
+        g2d.fillRect(0, 0, frame.getWidth(), frame.getHeight());
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         
+        // Mouse drags turn the cube: horizontal drags yaw it, vertical drags pitch it
+        long start = System.nanoTime();
+        renderer.setView(board, rotationAngleX, rotationAngleY, getWidth(), getHeight());
+        
         // Draw rotating cube
         drawRotatingCube(g2d);
         
-        if (running) {
-            // Draw food
-            draw3DPoint(g2d, food, FOOD_COLOR);
-            
-            // Draw snake
-            for (int i = 0; i < snake.size(); i++) {
-                Point3D segment = snake.get(i);
-                Color color = (i == 0) ? SNAKE_HEAD_COLOR : SNAKE_BODY_COLOR;
-                draw3DPoint(g2d, segment, color);
-            }
+        if (board.isRunning()) {
+            // Draw food and snake, farthest first
+            renderer.projectBoard(board);
+            renderer.draw(frame);
+            frameNanos = System.nanoTime() - start;
             
             // Draw score
             g2d.setColor(TEXT_COLOR);
-            g2d.drawString("Score: " + (snake.size() - 1), 20, 30);
+            g2d.drawString("Score: " + (board.length() - 1), 20, 30);
+            g2d.drawString(String.format("Frame: %.2f ms (%d points)", frameNanos / 1e6, renderer.getCount()), 20, 50);
+            if (autopilotOn) {
+                g2d.drawString(String.format("Autopilot: plan %.2f ms (p99 %.2f, max %.2f)  round %d",
+                        autopilot.getLastPlanNanos() / 1e6, autopilot.getPlanTimes().percentile(0.99) / 1e6,
+                        autopilot.getPlanTimes().getMax() / 1e6, rounds + 1), 20, 70);
+            }
             
             // Draw controls help if enabled
             if (showControls) {
@@ -112,94 +90,49 @@ public class Snake3DGame extends JPanel implements ActionListener, KeyListener,
         } else {
             gameOver(g2d);
         }
+        g2d.dispose();
+        g.drawImage(frame, 0, 0, null);
     }
     
     private void drawRotatingCube(Graphics2D g2d) {
-        int centerX = getWidth() / 2;
-        int centerY = getHeight() / 2;
+        int w = board.getWidth();
+        int h = board.getHeight();
+        int d = board.getDepth();
         
-        // Save original transform
-        AffineTransform oldTransform = g2d.getTransform();
-        
-        // Rotate around center (X and Y axes)
-        g2d.rotate(rotationAngleX, centerX, centerY);
-        g2d.rotate(rotationAngleY, centerX, centerY);
-        
-        // Draw cube edges
+        // Draw cube edges: every pair of corners that differ along one axis
         g2d.setColor(CUBE_COLOR);
-        int halfSize = CUBE_SIZE / 2;
-        
-        // Front face
-        g2d.drawRect(centerX - halfSize, centerY - halfSize, CUBE_SIZE, CUBE_SIZE);
-        
-        // Back face (smaller to simulate perspective)
-        int backSize = (int)(CUBE_SIZE * 0.8);
-        int backOffset = (CUBE_SIZE - backSize) / 2;
-        g2d.drawRect(centerX - halfSize + backOffset, centerY - halfSize + backOffset, backSize, backSize);
-        
-        // Connecting lines
-        g2d.drawLine(centerX - halfSize, centerY - halfSize, 
-                    centerX - halfSize + backOffset, centerY - halfSize + backOffset);
-        g2d.drawLine(centerX + halfSize, centerY - halfSize, 
-                    centerX + halfSize - backOffset, centerY - halfSize + backOffset);
-        g2d.drawLine(centerX - halfSize, centerY + halfSize, 
-                    centerX - halfSize + backOffset, centerY + halfSize - backOffset);
-        g2d.drawLine(centerX + halfSize, centerY + halfSize, 
-                    centerX + halfSize - backOffset, centerY + halfSize - backOffset);
-        
-        // Draw grid lines inside cube
-        g2d.setColor(GRID_COLOR);
-        int gridStep = CUBE_SIZE / WIDTH;
-        
-        // X-axis lines (front face)
-        for (int i = 1; i < WIDTH; i++) {
-            int x = centerX - halfSize + i * gridStep;
-            g2d.drawLine(x, centerY - halfSize, x, centerY + halfSize);
+        for (int corner = 0; corner < 8; corner++) {
+            for (int axis = 1; axis < 8; axis <<= 1) {
+                if ((corner & axis) == 0) {
+                    drawEdge(g2d, (corner & 1) * w, (corner >> 1 & 1) * h, (corner >> 2 & 1) * d,
+                            ((corner | axis) & 1) * w, ((corner | axis) >> 1 & 1) * h, ((corner | axis) >> 2 & 1) * d);
+                }
+            }
         }
         
-        // Y-axis lines (front face)
-        for (int i = 1; i < HEIGHT; i++) {
-            int y = centerY - halfSize + i * gridStep;
-            g2d.drawLine(centerX - halfSize, y, centerX + halfSize, y);
+        // Draw grid lines on the front face, unless they would be too close to see
+        if (CUBE_SIZE / Math.max(w, h) >= 6) {
+            g2d.setColor(GRID_COLOR);
+            for (int i = 1; i < w; i++) {
+                drawEdge(g2d, i, 0, 0, i, h, 0);
+            }
+            for (int i = 1; i < h; i++) {
+                drawEdge(g2d, 0, i, 0, w, i, 0);
+            }
         }
-        
-        // Restore original transform
-        g2d.setTransform(oldTransform);
     }
     
-    private void draw3DPoint(Graphics2D g2d, Point3D point, Color color) {
-        int centerX = getWidth() / 2;
-        int centerY = getHeight() / 2;
-        int halfSize = CUBE_SIZE / 2;
-        int gridStep = CUBE_SIZE / WIDTH;
-        
-        // Calculate position in 3D space (with perspective)
-        double perspective = 1.0 - (point.z * 0.05);
-        
-        int x = centerX - halfSize + (int)(point.x * gridStep * perspective);
-        int y = centerY - halfSize + (int)(point.y * gridStep * perspective);
-        int size = (int)(TILE_SIZE * perspective);
-        
-        // Apply rotation
-        AffineTransform oldTransform = g2d.getTransform();
-        g2d.rotate(rotationAngleX, centerX, centerY);
-        g2d.rotate(rotationAngleY, centerX, centerY);
-        
-        // Draw the point
-        g2d.setColor(color);
-        g2d.fillOval(x - size/2, y - size/2, size, size);
-        
-        // Add highlight for 3D effect
-        g2d.setColor(color.brighter());
-        g2d.drawArc(x - size/2, y - size/2, size, size, 45, 180);
-        
-        // Restore transform
-        g2d.setTransform(oldTransform);
+    private void drawEdge(Graphics2D g2d, float x1, float y1, float z1, float x2, float y2, float z2) {
+        renderer.project(x1, y1, z1);
+        int sx = Math.round(renderer.projectedX);
+        int sy = Math.round(renderer.projectedY);
+        renderer.project(x2, y2, z2);
+        g2d.drawLine(sx, sy, Math.round(renderer.projectedX), Math.round(renderer.projectedY));
     }
     
     private void drawControls(Graphics2D g2d) {
         int panelWidth = 220;
-        int panelHeight = 140;
+        int panelHeight = 160;
         int x = getWidth() - panelWidth - 20;
         int y = 20;
         
@@ -217,6 +150,7 @@ public class Snake3DGame extends JPanel implements ActionListener, KeyListener,
         g2d.drawString("Z-Axis: W/S Keys", x + 10, y + 80);
         g2d.drawString("Rotate Cube: Mouse Drag", x + 10, y + 100);
         g2d.drawString("Toggle Help: H", x + 10, y + 120);
+        g2d.drawString("Autopilot: A", x + 10, y + 140);
     }
     
     private void gameOver(Graphics2D g2d) {
@@ -228,42 +162,32 @@ public class Snake3DGame extends JPanel implements ActionListener, KeyListener,
         g2d.setColor(TEXT_COLOR);
         g2d.setFont(new Font("Arial", Font.PLAIN, 20));
         metrics = g2d.getFontMetrics();
-        g2d.drawString("Score: " + (snake.size() - 1), (getWidth() - metrics.stringWidth("Score: " + (snake.size() - 1))) / 2, getHeight() / 2 + 40);
+        g2d.drawString("Score: " + (board.length() - 1), (getWidth() - metrics.stringWidth("Score: " + (board.length() - 1))) / 2, getHeight() / 2 + 40);
         
         g2d.drawString("Press SPACE to restart", (getWidth() - metrics.stringWidth("Press SPACE to restart")) / 2, getHeight() / 2 + 70);
     }
     
     private void move() {
-        Point3D head = snake.get(0);
-        Point3D newHead = new Point3D(
-            (head.x + directionX + WIDTH) % WIDTH,
-            (head.y + directionY + HEIGHT) % HEIGHT,
-            (head.z + directionZ + DEPTH) % DEPTH
-        );
-        
-        // Check for collisions with self
-        for (Point3D segment : snake) {
-            if (segment.x == newHead.x && segment.y == newHead.y && segment.z == newHead.z) {
-                running = false;
-                timer.stop();
-                repaint();
+        if (autopilotOn) {
+            autopilot.steer(board);
+        }
+        board.move();
+        if (!board.isRunning()) {
+            if (autopilotOn) {
+                // Hands-off runs keep going: log the round and start the next one
+                rounds++;
+                System.out.printf("Round %d: length %d, plan %s%n", rounds, board.length(), autopilot.getPlanTimes().summary());
+                board.reset();
                 return;
             }
-        }
-        
-        snake.add(0, newHead);
-        
-        // Check if snake ate food
-        if (newHead.x == food.x && newHead.y == food.y && newHead.z == food.z) {
-            spawnFood();
-        } else {
-            snake.remove(snake.size() - 1);
+            timer.stop();
+            repaint();
         }
     }
     
     @Override
     public void actionPerformed(ActionEvent e) {
-        if (running) {
+        if (board.isRunning()) {
             move();
             repaint();
         }
@@ -273,46 +197,42 @@ public class Snake3DGame extends JPanel implements ActionListener, KeyListener,
     public void keyPressed(KeyEvent e) {
         int key = e.getKeyCode();
         
-        if (key == KeyEvent.VK_SPACE && !running) {
+        if (key == KeyEvent.VK_SPACE && !board.isRunning()) {
             initGame();
             repaint();
         }
         
+        if (key == KeyEvent.VK_A) {
+            autopilotOn = !autopilotOn;
+            repaint();
+        }
+        
         if (key == KeyEvent.VK_H) {
             showControls = !showControls;
             repaint();
         }
         
-        if (running) {
+        if (board.isRunning() && !autopilotOn) {
+            int directionX = board.getDirectionX();
+            int directionY = board.getDirectionY();
+            int directionZ = board.getDirectionZ();
             // X-axis movement (LEFT/RIGHT)
             if (key == KeyEvent.VK_RIGHT && directionX != -1) {
-                directionX = 1;
-                directionY = 0;
-                directionZ = 0;
+                board.setDirection(1, 0, 0);
             } else if (key == KeyEvent.VK_LEFT && directionX != 1) {
-                directionX = -1;
-                directionY = 0;
-                directionZ = 0;
+                board.setDirection(-1, 0, 0);
             }
             // Y-axis movement (UP/DOWN)
             else if (key == KeyEvent.VK_UP && directionY != 1) {
-                directionX = 0;
-                directionY = -1;
-                directionZ = 0;
+                board.setDirection(0, -1, 0);
             } else if (key == KeyEvent.VK_DOWN && directionY != -1) {
-                directionX = 0;
-                directionY = 1;
-                directionZ = 0;
+                board.setDirection(0, 1, 0);
             }
             // Z-axis movement (W/S)
             else if (key == KeyEvent.VK_W && directionZ != -1) {
-                directionX = 0;
-                directionY = 0;
-                directionZ = 1;
+                board.setDirection(0, 0, 1);
             } else if (key == KeyEvent.VK_S && directionZ != 1) {
-                directionX = 0;
-                directionY = 0;
-                directionZ = -1;
+                board.setDirection(0, 0, -1);
             }
         }
     }
@@ -363,23 +283,86 @@ public class Snake3DGame extends JPanel implements ActionListener, KeyListener,
     @Override
     public void keyReleased(KeyEvent e) {}
     
-    private static class Point3D {
-        int x, y, z;
-        
-        Point3D(int x, int y, int z) {
-            this.x = x;
-            this.y = y;
-            this.z = z;
-        }
-    }
-    
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--bench")) {
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 2000,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 32);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--stress")) {
+            stress(args.length > 1 ? Integer.parseInt(args[1]) : 64,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 20_000);
+            return;
+        }
+        // Optional grid size, e.g. "java Snake3DGame 128" for a 128x128x128 grid,
+        // and "--autopilot" to let the AI drive
+        int size = DEFAULT_SIZE;
+        boolean autopilotOn = false;
+        for (String arg : args) {
+            if (arg.equals("--autopilot")) {
+                autopilotOn = true;
+            } else {
+                size = Integer.parseInt(arg);
+            }
+        }
         JFrame frame = new JFrame("3D Snake Game - Mouse Controlled Cube");
-        Snake3DGame game = new Snake3DGame();
+        Snake3DGame game = new Snake3DGame(size, autopilotOn);
         frame.add(game);
         frame.pack();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
     }
-}
\ No newline at end of file
+    
+    // "java Snake3DGame --bench [segments] [size]": renders a spinning snake
+    // offscreen and reports projection+sort+draw time per frame
+    private static void benchmark(int segments, int size) {
+        SnakeBoard3D board = new SnakeBoard3D(size, size, size, new Random(1));
+        board.reset(segments);
+        SnakeRenderer3D renderer = new SnakeRenderer3D(CUBE_SIZE);
+        BufferedImage image = new BufferedImage(600, 600, BufferedImage.TYPE_INT_RGB);
+        int frames = 2000;
+        long[] times = new long[frames];
+        for (int f = -500; f < frames; f++) {
+            Graphics2D g = image.createGraphics();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, 600, 600);
+            long start = System.nanoTime();
+            renderer.setView(board, f * 0.01, 0.4 + f * 0.003, 600, 600);
+            renderer.projectBoard(board);
+            renderer.draw(image);
+            long elapsed = System.nanoTime() - start;
+            g.dispose();
+            if (f >= 0) {
+                times[f] = elapsed;
+            }
+        }
+        Arrays.sort(times);
+        System.out.printf("%d points on a %d^3 grid: frame p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                renderer.getCount(), size, times[frames / 2] / 1e6, times[frames * 99 / 100] / 1e6, times[frames - 1] / 1e6);
+    }
+    
+    // "java Snake3DGame --stress [size] [moves]": lets the autopilot play
+    // headless and reports planning time against the DELAY budget
+    private static void stress(int size, int moves) {
+        SnakeBoard3D board = new SnakeBoard3D(size, size, size, new Random(1));
+        Autopilot3D autopilot = new Autopilot3D(size, size, size);
+        int rounds = 0;
+        int longest = 1;
+        long start = System.nanoTime();
+        for (int i = 0; i < moves; i++) {
+            autopilot.steer(board);
+            board.move();
+            longest = Math.max(longest, board.length());
+            if (!board.isRunning()) {
+                rounds++;
+                board.reset();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d moves on a %d^3 grid in %.1f s: %d deaths, longest snake %d, current %d%n",
+                moves, size, elapsed / 1e9, rounds, longest, board.length());
+        System.out.printf("food paths %d, tail chases %d%n", autopilot.getSafePaths(), autopilot.getTailChases());
+        System.out.printf("plan %s (budget %d ms)%n", autopilot.getPlanTimes().summary(), DELAY);
+    }
+}
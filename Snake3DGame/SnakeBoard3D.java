@@ -0,0 +1,225 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Headless rules for 3D Snake on a wrap-around grid. Cells are packed as
+ * {@code (z * height + y) * width + x}. The body is a ring buffer of packed
+ * cells backed by an occupancy bitset, and the empty cells are kept in a
+ * {@link FreeCellSet}, so a move, its collision check and a food spawn each
+ * cost the same whatever the size of the grid or the snake.
+ */
+public class SnakeBoard3D {
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int cells;
+    private final int[] body;
+    private final long[] occupied;
+    private final FreeCellSet free;
+    private final RandomGenerator random;
+    private int head;
+    private int length;
+    private int food;
+    private int directionX;
+    private int directionY;
+    private int directionZ;
+    private boolean running;
+
+    public SnakeBoard3D(int width, int height, int depth, RandomGenerator random) {
+        if ((long) width * height * depth > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Grid too large: " + width + "x" + height + "x" + depth);
+        }
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.cells = width * height * depth;
+        this.body = new int[cells];
+        this.occupied = new long[(cells + 63) >>> 6];
+        this.free = new FreeCellSet(cells);
+        this.random = random;
+        reset();
+    }
+
+    public void reset() {
+        reset(1);
+    }
+
+    /**
+     * Starts a new game. A snake longer than one cell is laid out along a
+     * serpentine walk through the grid, row by row and layer by layer, with
+     * its head at the end of the walk, heading on along it.
+     */
+    public void reset(int initialLength) {
+        Arrays.fill(occupied, 0L);
+        free.fill();
+        if (initialLength <= 1) {
+            head = 0;
+            body[0] = cell(width / 2, height / 2, depth / 2);
+            length = 1;
+            occupy(body[0]);
+            setDirection(1, 0, 0);
+        } else {
+            length = Math.min(initialLength, cells - 1);
+            for (int i = 0; i < length; i++) {
+                body[i] = serpentine(i);
+                occupy(body[i]);
+            }
+            head = length - 1;
+            int from = serpentine(length - 2);
+            int to = serpentine(length - 1);
+            setDirection(cellX(to) - cellX(from), cellY(to) - cellY(from), cellZ(to) - cellZ(from));
+        }
+        running = true;
+        spawnFood();
+    }
+
+    // The i-th cell of a walk that covers the grid one step at a time
+    private int serpentine(int i) {
+        int layer = width * height;
+        int z = i / layer;
+        int row = i % layer / width;
+        int column = i % width;
+        int y = z % 2 == 0 ? row : height - 1 - row;
+        int x = (z * height + row) % 2 == 0 ? column : width - 1 - column;
+        return cell(x, y, z);
+    }
+
+    public void spawnFood() {
+        food = free.random(random);
+        if (food < 0) {
+            // The snake fills the whole grid
+            running = false;
+        }
+    }
+
+    /** Advances the snake one cell, wrapping at the faces of the grid. */
+    public void move() {
+        if (!running) {
+            return;
+        }
+        int next = neighbour(body[head], directionX, directionY, directionZ);
+
+        // The tail has not moved yet, so running into it still counts
+        if (isOccupied(next)) {
+            running = false;
+            return;
+        }
+
+        head = head + 1 == cells ? 0 : head + 1;
+        body[head] = next;
+        length++;
+        occupy(next);
+
+        if (next == food) {
+            spawnFood();
+        } else {
+            vacate(segment(length - 1));
+            length--;
+        }
+    }
+
+    /** The cell one step from {@code cell} along the given axis direction, wrapped. */
+    public int neighbour(int cell, int dx, int dy, int dz) {
+        int x = cellX(cell) + dx;
+        int y = cellY(cell) + dy;
+        int z = cellZ(cell) + dz;
+        if (x < 0) {
+            x += width;
+        } else if (x == width) {
+            x = 0;
+        }
+        if (y < 0) {
+            y += height;
+        } else if (y == height) {
+            y = 0;
+        }
+        if (z < 0) {
+            z += depth;
+        } else if (z == depth) {
+            z = 0;
+        }
+        return cell(x, y, z);
+    }
+
+    public boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private void occupy(int cell) {
+        occupied[cell >>> 6] |= 1L << cell;
+        free.remove(cell);
+    }
+
+    private void vacate(int cell) {
+        occupied[cell >>> 6] &= ~(1L << cell);
+        free.add(cell);
+    }
+
+    /** Cell of the i-th segment, counting from the head. */
+    public int segment(int i) {
+        int index = head - i;
+        return body[index < 0 ? index + cells : index];
+    }
+
+    public int cell(int x, int y, int z) {
+        return (z * height + y) * width + x;
+    }
+
+    public int cellX(int cell) {
+        return cell % width;
+    }
+
+    public int cellY(int cell) {
+        return cell / width % height;
+    }
+
+    public int cellZ(int cell) {
+        return cell / (width * height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int getFood() {
+        return food;
+    }
+
+    public int getDirectionX() {
+        return directionX;
+    }
+
+    public int getDirectionY() {
+        return directionY;
+    }
+
+    public int getDirectionZ() {
+        return directionZ;
+    }
+
+    public void setDirection(int dx, int dy, int dz) {
+        directionX = dx;
+        directionY = dy;
+        directionZ = dz;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,423 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Projects and draws the snake and food for one frame. A single 3x4 matrix
+ * (centre the grid, scale to the cube, yaw, pitch) is built per frame, every
+ * point is pushed through it in one pass into preallocated float arrays, and
+ * the points are radix-sorted on a 16-bit depth key so they can be drawn back
+ * to front as cached sprites. Pixels that nearer sprites cover with opaque
+ * ones are trimmed off each sprite row first, and what is left is blended
+ * straight into the pixels of an integer RGB image rather than through
+ * drawImage, whose set-up per call costs more than a small sprite's pixels
+ * do. Nothing is allocated per frame once the arrays have grown to the
+ * snake's length.
+ */
+public class SnakeRenderer3D {
+    public static final byte BODY = 0;
+    public static final byte HEAD = 1;
+    public static final byte FOOD = 2;
+
+    private static final Color[] COLORS = {new Color(0, 150, 0), Color.GREEN, Color.RED};
+
+    private final int cubeSize;
+    // Row-major 3x4 grid-to-camera matrix, rebuilt by setView
+    private float m00, m01, m02, m03;
+    private float m10, m11, m12, m13;
+    private float m20, m21, m22, m23;
+    private float centerX;
+    private float centerY;
+    // One bit per pixel, set where a nearer sprite is opaque
+    private long[] covered = new long[0];
+    private int coveredWords;
+    private float cameraDistance;
+    private float unit;
+    private float radius;
+
+    private float[] screenX = new float[0];
+    private float[] screenY = new float[0];
+    private float[] size = new float[0];
+    private byte[] kind = new byte[0];
+    private int[] keys = new int[0];
+    private int[] order = new int[0];
+    private int[] scratch = new int[0];
+    private boolean[] hidden = new boolean[0];
+    // Per point, where its rows start in visibleFrom/visibleTo
+    private int[] rowStart = new int[0];
+    // Per sprite row, the columns left to draw once nearer sprites are allowed for
+    private int[] visibleFrom = new int[0];
+    private int[] visibleTo = new int[0];
+    private final int[] counts = new int[256];
+    private int count;
+
+    // Sprites by kind and diameter in pixels, drawn on first use
+    private final Sprite[][] sprites = new Sprite[COLORS.length][];
+
+    // Output of project(x, y, z)
+    public float projectedX;
+    public float projectedY;
+
+    public SnakeRenderer3D(int cubeSize) {
+        this.cubeSize = cubeSize;
+        for (int i = 0; i < sprites.length; i++) {
+            sprites[i] = new Sprite[cubeSize + 1];
+        }
+    }
+
+    /** Builds this frame's matrix: yaw turns about the vertical axis, pitch about the horizontal. */
+    public void setView(SnakeBoard3D board, double yaw, double pitch, int width, int height) {
+        int span = Math.max(board.getWidth(), Math.max(board.getHeight(), board.getDepth()));
+        unit = (float) cubeSize / span;
+        radius = unit * (float) Math.sqrt((double) board.getWidth() * board.getWidth()
+                + (double) board.getHeight() * board.getHeight() + (double) board.getDepth() * board.getDepth()) / 2;
+        cameraDistance = 2.5f * cubeSize;
+        centerX = width / 2f;
+        centerY = height / 2f;
+
+        float cy = (float) Math.cos(yaw);
+        float sy = (float) Math.sin(yaw);
+        float cp = (float) Math.cos(pitch);
+        float sp = (float) Math.sin(pitch);
+        // R = Rx(pitch) * Ry(yaw), scaled by unit
+        m00 = cy * unit;
+        m01 = 0;
+        m02 = sy * unit;
+        m10 = sp * sy * unit;
+        m11 = cp * unit;
+        m12 = -sp * cy * unit;
+        m20 = -cp * sy * unit;
+        m21 = sp * unit;
+        m22 = cp * cy * unit;
+        // Translation takes cell centres so the middle of the grid lands on the origin
+        float ox = 0.5f - board.getWidth() / 2f;
+        float oy = 0.5f - board.getHeight() / 2f;
+        float oz = 0.5f - board.getDepth() / 2f;
+        m03 = m00 * ox + m01 * oy + m02 * oz;
+        m13 = m10 * ox + m11 * oy + m12 * oz;
+        m23 = m20 * ox + m21 * oy + m22 * oz + cameraDistance;
+    }
+
+    /** Projects one grid-space point (cell units, not centred) into projectedX/Y. */
+    public void project(float x, float y, float z) {
+        x -= 0.5f;
+        y -= 0.5f;
+        z -= 0.5f;
+        float cz = m20 * x + m21 * y + m22 * z + m23;
+        float scale = cameraDistance / cz;
+        projectedX = centerX + (m00 * x + m01 * y + m02 * z + m03) * scale;
+        projectedY = centerY + (m10 * x + m11 * y + m12 * z + m13) * scale;
+    }
+
+    /** Projects the food and every segment of the snake, then sorts them far to near. */
+    public void projectBoard(SnakeBoard3D board) {
+        int n = board.length() + 1;
+        ensureCapacity(n);
+        count = 0;
+        add(board, board.getFood(), FOOD);
+        for (int i = 0; i < board.length(); i++) {
+            add(board, board.segment(i), i == 0 ? HEAD : BODY);
+        }
+        sort();
+    }
+
+    private void add(SnakeBoard3D board, int cell, byte type) {
+        if (cell < 0) {
+            return;
+        }
+        int x = board.cellX(cell);
+        int y = board.cellY(cell);
+        int z = board.cellZ(cell);
+        float cz = m20 * x + m21 * y + m22 * z + m23;
+        float scale = cameraDistance / cz;
+        int i = count++;
+        screenX[i] = centerX + (m00 * x + m01 * y + m02 * z + m03) * scale;
+        screenY[i] = centerY + (m10 * x + m11 * y + m12 * z + m13) * scale;
+        size[i] = unit * scale;
+        kind[i] = type;
+        // Farthest first: 0 at the back of the bounding sphere, 65535 at the front
+        int key = (int) ((cameraDistance + radius - cz) * (65535f / (2 * radius)));
+        keys[i] = Math.max(0, Math.min(65535, key));
+    }
+
+    // Two-pass LSD radix sort of point indices by 16-bit key
+    private void sort() {
+        int[] from = order;
+        int[] to = scratch;
+        for (int i = 0; i < count; i++) {
+            from[i] = i;
+        }
+        for (int shift = 0; shift < 16; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[(keys[from[i]] >>> shift) & 0xFF]++;
+            }
+            int total = 0;
+            for (int b = 0; b < 256; b++) {
+                int c = counts[b];
+                counts[b] = total;
+                total += c;
+            }
+            for (int i = 0; i < count; i++) {
+                int index = from[i];
+                to[counts[(keys[index] >>> shift) & 0xFF]++] = index;
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        // After an even number of passes the result is back in order
+    }
+
+    /** Draws the projected points back to front into an image of TYPE_INT_RGB. */
+    public void draw(BufferedImage target) {
+        if (target.getType() != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("needs a TYPE_INT_RGB image");
+        }
+        int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        int width = target.getWidth();
+        cull(width, target.getHeight());
+        for (int i = 0; i < count; i++) {
+            int index = order[i];
+            if (hidden[index]) {
+                continue;
+            }
+            int diameter = diameter(index);
+            blend(sprite(kind[index], diameter), rowStart[index], pixels, width,
+                    (int) screenX[index] - diameter / 2, (int) screenY[index] - diameter / 2);
+        }
+    }
+
+    // Source-over of a premultiplied sprite onto opaque RGB pixels, visiting
+    // only the columns cull left in each row. The solid run in the middle of
+    // a row is copied rather than blended.
+    private void blend(Sprite sprite, int start, int[] pixels, int width, int left, int top) {
+        int side = sprite.side;
+        for (int row = 0; row < side; row++) {
+            int from = visibleFrom[start + row];
+            int to = visibleTo[start + row];
+            if (from >= to) {
+                continue;
+            }
+            int solidFrom = Math.max(sprite.solidFrom[row], from);
+            int solidTo = Math.min(sprite.solidTo[row], to);
+            int source = row * side;
+            int target = (top + row) * width + left;
+            if (solidFrom < solidTo) {
+                blendRun(sprite.pixels, source, pixels, target, from, solidFrom);
+                System.arraycopy(sprite.pixels, source + solidFrom, pixels, target + solidFrom, solidTo - solidFrom);
+                blendRun(sprite.pixels, source, pixels, target, solidTo, to);
+            } else {
+                blendRun(sprite.pixels, source, pixels, target, from, to);
+            }
+        }
+    }
+
+    private static void blendRun(int[] sprite, int source, int[] pixels, int target, int from, int to) {
+        for (int col = from; col < to; col++) {
+            int p = sprite[source + col];
+            int alpha = p >>> 24;
+            if (alpha == 255) {
+                pixels[target + col] = p;
+            } else if (alpha != 0) {
+                int q = pixels[target + col];
+                int keep = 255 - alpha;
+                pixels[target + col] = (p & 0xFF0000) + (scale(q >> 16 & 0xFF, keep) << 16)
+                        | (p & 0xFF00) + (scale(q >> 8 & 0xFF, keep) << 8)
+                        | (p & 0xFF) + scale(q & 0xFF, keep);
+            }
+        }
+    }
+
+    // channel * factor / 255, rounded, for both in 0..255
+    private static int scale(int channel, int factor) {
+        int t = channel * factor + 128;
+        return (t + (t >> 8)) >> 8;
+    }
+
+    // Walks the points front to back, clipping each sprite row to the image
+    // and then trimming from both ends the pixels that nearer sprites already
+    // cover with opaque ones, since those would be painted over anyway. The
+    // row's own solid run is then marked covered for the points behind it.
+    // A point with nothing left in any row is hidden.
+    private void cull(int width, int height) {
+        coveredWords = (width + 63) >> 6;
+        if (covered.length < coveredWords * height) {
+            covered = new long[coveredWords * height];
+        } else {
+            Arrays.fill(covered, 0, coveredWords * height, 0);
+        }
+        int rows = 0;
+        for (int i = 0; i < count; i++) {
+            rowStart[i] = rows;
+            rows += diameter(i) + 1;
+        }
+        if (visibleFrom.length < rows) {
+            visibleFrom = new int[Math.max(rows, visibleFrom.length * 2)];
+            visibleTo = new int[visibleFrom.length];
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            int index = order[i];
+            int diameter = diameter(index);
+            Sprite sprite = sprite(kind[index], diameter);
+            int left = (int) screenX[index] - diameter / 2;
+            int top = (int) screenY[index] - diameter / 2;
+            int start = rowStart[index];
+            boolean visible = false;
+            for (int row = 0; row < sprite.side; row++) {
+                int y = top + row;
+                int from = Math.max(sprite.spanFrom[row], -left) + left;
+                int to = Math.min(sprite.spanTo[row], width - left) + left;
+                if (y < 0 || y >= height || from >= to) {
+                    visibleFrom[start + row] = 0;
+                    visibleTo[start + row] = 0;
+                    continue;
+                }
+                int base = y * coveredWords;
+                from = firstClear(base, from, to);
+                to = lastClear(base, from, to);
+                visibleFrom[start + row] = from - left;
+                visibleTo[start + row] = to - left;
+                if (from < to) {
+                    visible = true;
+                    setCovered(base, Math.max(sprite.solidFrom[row] + left, from),
+                            Math.min(sprite.solidTo[row] + left, to));
+                }
+            }
+            hidden[index] = !visible;
+        }
+    }
+
+    // The first pixel in [from, to) of a row not yet covered, or to
+    private int firstClear(int base, int from, int to) {
+        int x = from;
+        while (x < to) {
+            int word = x >> 6;
+            long clear = ~covered[base + word] & (-1L << x);
+            if (clear != 0) {
+                return Math.min(to, (word << 6) + Long.numberOfTrailingZeros(clear));
+            }
+            x = (word + 1) << 6;
+        }
+        return to;
+    }
+
+    // One past the last pixel in [from, to) of a row not yet covered, or from
+    private int lastClear(int base, int from, int to) {
+        int x = to - 1;
+        while (x >= from) {
+            int word = x >> 6;
+            long clear = ~covered[base + word] & (-1L >>> (63 - (x & 63)));
+            if (clear != 0) {
+                return Math.max(from, (word << 6) + 64 - Long.numberOfLeadingZeros(clear));
+            }
+            x = (word << 6) - 1;
+        }
+        return from;
+    }
+
+    private void setCovered(int base, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int first = from >> 6;
+        int last = (to - 1) >> 6;
+        long head = -1L << from;
+        long tail = -1L >>> (63 - ((to - 1) & 63));
+        if (first == last) {
+            covered[base + first] |= head & tail;
+            return;
+        }
+        covered[base + first] |= head;
+        for (int word = first + 1; word < last; word++) {
+            covered[base + word] = -1L;
+        }
+        covered[base + last] |= tail;
+    }
+
+    private int diameter(int index) {
+        return Math.max(2, Math.min(cubeSize, (int) size[index]));
+    }
+
+    private Sprite sprite(byte type, int diameter) {
+        Sprite sprite = sprites[type][diameter];
+        if (sprite == null) {
+            BufferedImage image = new BufferedImage(diameter + 1, diameter + 1, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(COLORS[type]);
+            g.fillOval(0, 0, diameter, diameter);
+            // Highlight for a 3D effect
+            g.setColor(COLORS[type].brighter());
+            g.drawArc(0, 0, diameter, diameter, 45, 180);
+            g.dispose();
+            sprite = new Sprite(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), diameter + 1);
+            sprites[type][diameter] = sprite;
+        }
+        return sprite;
+    }
+
+    // A sprite's premultiplied ARGB pixels, and per row where the pixels
+    // that are not fully clear start and end, and the longest run of fully
+    // opaque ones
+    private static final class Sprite {
+        final int[] pixels;
+        final int side;
+        final int[] spanFrom;
+        final int[] spanTo;
+        final int[] solidFrom;
+        final int[] solidTo;
+
+        Sprite(int[] pixels, int side) {
+            this.pixels = pixels;
+            this.side = side;
+            spanFrom = new int[side];
+            spanTo = new int[side];
+            solidFrom = new int[side];
+            solidTo = new int[side];
+            for (int row = 0; row < side; row++) {
+                int from = 0;
+                int to = side;
+                while (from < to && pixels[row * side + from] >>> 24 == 0) {
+                    from++;
+                }
+                while (to > from && pixels[row * side + to - 1] >>> 24 == 0) {
+                    to--;
+                }
+                spanFrom[row] = from;
+                spanTo[row] = to;
+                int run = from;
+                for (int col = from; col <= to; col++) {
+                    if (col == to || pixels[row * side + col] >>> 24 != 255) {
+                        if (col - run > solidTo[row] - solidFrom[row]) {
+                            solidFrom[row] = run;
+                            solidTo[row] = col;
+                        }
+                        run = col + 1;
+                    }
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (screenX.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, screenX.length * 2);
+        screenX = new float[capacity];
+        screenY = new float[capacity];
+        size = new float[capacity];
+        kind = new byte[capacity];
+        keys = new int[capacity];
+        order = new int[capacity];
+        scratch = new int[capacity];
+        hidden = new boolean[capacity];
+        rowStart = new int[capacity];
+    }
+
+    public int getCount() {
+        return count;
+    }
+}